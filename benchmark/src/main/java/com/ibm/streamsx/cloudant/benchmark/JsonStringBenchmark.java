@@ -0,0 +1,85 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.ibm.streamsx.cloudant.client.JsonString;
+
+/**
+ * Compares reading and setting _id/_rev with JsonString, which scans and splices the text,
+ * with the Gson path it replaced, which parses the document into a JsonObject and serializes it again.
+ * The documents have a number of top level fields with nested objects and arrays, and _id/_rev at the end,
+ * which is the worst case for the scanner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonStringBenchmark {
+
+	// the number of top level fields of the document, about 100 bytes each
+	@Param({ "10", "1000", "10000" })
+	public int fields;
+
+	private String document;
+
+	@Setup
+	public void createDocument() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < fields; i++) {
+			sb.append("\"field").append(i).append("\":{\"name\":\"value ").append(i)
+				.append("\",\"tags\":[\"a\",\"b\",\"c\"],\"count\":").append(i).append(",\"text\":\"x\\\"y\"},");
+		}
+		sb.append("\"_id\":\"doc-").append(fields).append("\",\"_rev\":\"1-967a00dff5e02add41819138abb3284d\"}");
+		document = sb.toString();
+	}
+
+	@Benchmark
+	public String scannerGetRevision() {
+		return new JsonString(document).getTopLevelStringProperty("_rev");
+	}
+
+	@Benchmark
+	public String gsonGetRevision() {
+		return new Gson().fromJson(document, JsonObject.class).get("_rev").getAsString();
+	}
+
+	@Benchmark
+	public String scannerSetIdAndRevision() {
+		JsonString json = new JsonString(document);
+		json.setTopLevelStringProperty("_id", "doc-new");
+		json.setTopLevelStringProperty("_rev", "2-7051cbe5c8faecd085a3fa619e6e6337");
+		return json.getString();
+	}
+
+	@Benchmark
+	public String gsonSetIdAndRevision() {
+		JsonObject json = new Gson().fromJson(document, JsonObject.class);
+		json.addProperty("_id", "doc-new");
+		json.addProperty("_rev", "2-7051cbe5c8faecd085a3fa619e6e6337");
+		return json.toString();
+	}
+
+}
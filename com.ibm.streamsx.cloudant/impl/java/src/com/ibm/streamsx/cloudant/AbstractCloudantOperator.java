@@ -9,6 +9,7 @@ package com.ibm.streamsx.cloudant;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
@@ -18,9 +19,13 @@ import com.ibm.streams.operator.OperatorContext.ContextCheck;
 import com.ibm.streams.operator.OutputTuple;
 import com.ibm.streams.operator.Type.MetaType;
 import com.ibm.streams.operator.compile.OperatorContextChecker;
+import com.ibm.streams.operator.metrics.Metric;
 import com.ibm.streams.operator.model.Libraries;
 import com.ibm.streams.operator.model.Parameter;
+import com.ibm.streamsx.cloudant.client.Client;
 import com.ibm.streamsx.cloudant.client.Configuration;
+import com.ibm.streamsx.cloudant.client.DocumentCache;
+import com.ibm.streamsx.cloudant.client.TransferStatistics;
 import com.ibm.streamsx.cloudant.util.StreamsHelper;
 
 /**
@@ -58,6 +63,23 @@ public class AbstractCloudantOperator extends AbstractOperator
 	
 	// The name of the applicaton config object
 	private String appConfigName = null;
+	
+	// the size of the connection pool of the client, the client default is used if not set
+	private Integer maxConnections = null;
+	
+	// retry settings for requests failing with transient errors, the client defaults are used if not set
+	private Integer maxRetries = null;
+	private Double retryInitialDelay = null;
+	private Double retryMaxDelay = null;
+	private Double retryDeadline = null;
+	
+	// max requests per second for each request class, shared by all operators using the same account
+	private static final String READ_RATE_LIMIT_PARAM = "readRateLimit";
+	private static final String WRITE_RATE_LIMIT_PARAM = "writeRateLimit";
+	private static final String QUERY_RATE_LIMIT_PARAM = "queryRateLimit";
+	private Double readRateLimit = null;
+	private Double writeRateLimit = null;
+	private Double queryRateLimit = null;
  
 	// internal members ------------------------------------------------------------------------------
 	
@@ -67,6 +89,9 @@ public class AbstractCloudantOperator extends AbstractOperator
     // data from application config object
     Map<String, String> appConfig = null;
     
+    // the refresh interval of the transfer metrics in milliseconds
+    private static final long TRANSFER_METRICS_INTERVAL = 1000;
+    
 	// operator methods ------------------------------------------------------------------------------
 
 	@Override
@@ -115,10 +140,113 @@ public class AbstractCloudantOperator extends AbstractOperator
 		} else {
 			cfg.setDatabase(appConfig.get("databaseName"));
 		}
+		
+		if (null != maxConnections) {
+			cfg.setMaxConnections(maxConnections);
+		}
+		
+		if (null != maxRetries) {
+			cfg.setMaxRetries(maxRetries);
+		}
+		
+		if (null != retryInitialDelay) {
+			cfg.setRetryInitialDelay((long) (retryInitialDelay * 1000));
+		}
+		
+		if (null != retryMaxDelay) {
+			cfg.setRetryMaxDelay((long) (retryMaxDelay * 1000));
+		}
+		
+		if (null != retryDeadline) {
+			cfg.setRetryDeadline((long) (retryDeadline * 1000));
+		}
+		
+		cfg.setReadRateLimit(getRateLimit(readRateLimit, READ_RATE_LIMIT_PARAM));
+		cfg.setWriteRateLimit(getRateLimit(writeRateLimit, WRITE_RATE_LIMIT_PARAM));
+		cfg.setQueryRateLimit(getRateLimit(queryRateLimit, QUERY_RATE_LIMIT_PARAM));
 
 		return cfg;
 	}
 	
+	/**
+	 * make the connection pool of the client large enough for the requests an operator sends concurrently
+	 * @param cfg the configuration of the client
+	 * @param concurrentRequests the max number of requests in flight at the same time
+	 */
+	protected static void ensureConnections(Configuration cfg, int concurrentRequests) {
+		if (cfg.getMaxConnections() < concurrentRequests) {
+			cfg.setMaxConnections(concurrentRequests);
+		}
+	}
+	
+	/**
+	 * get a rate limit from the parameter, or from the application config if the parameter is not set
+	 * @param parameterValue the parameter value, null if not set
+	 * @param key the key in the application config, equal to the parameter name
+	 * @return the limit, 0 if not configured
+	 */
+	private double getRateLimit(Double parameterValue, String key) {
+		if (null != parameterValue) {
+			return parameterValue;
+		}
+		String value = appConfig.get(key);
+		if (null == value || value.trim().isEmpty()) {
+			return 0;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			logger.error("Invalid value of application config entry " + key + ": " + value);
+			return 0;
+		}
+	}
+	
+	/**
+	 * create the metrics for the bytes sent and received, and refresh them periodically from the client statistics.
+	 * The wire bytes are the compressed body sizes, the other metrics count the uncompressed body sizes
+	 * @param client the client used by the operator
+	 */
+	protected void startTransferMetrics(Client client) {
+		OperatorContext context = getOperatorContext();
+		final TransferStatistics stats = client.getTransferStatistics();
+		final Metric sent = context.getMetrics().createCustomMetric("nBytesSent", "The number of uncompressed bytes of the request bodies", Metric.Kind.COUNTER);
+		final Metric sentWire = context.getMetrics().createCustomMetric("nWireBytesSent", "The number of bytes of the request bodies as sent, after compression", Metric.Kind.COUNTER);
+		final Metric received = context.getMetrics().createCustomMetric("nBytesReceived", "The number of uncompressed bytes of the response bodies", Metric.Kind.COUNTER);
+		final Metric receivedWire = context.getMetrics().createCustomMetric("nWireBytesReceived", "The number of bytes of the response bodies as received, before decompression", Metric.Kind.COUNTER);
+		context.getScheduledExecutorService().scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				sent.setValue(stats.getSentBytes());
+				sentWire.setValue(stats.getSentWireBytes());
+				received.setValue(stats.getReceivedBytes());
+				receivedWire.setValue(stats.getReceivedWireBytes());
+			}
+		}, TRANSFER_METRICS_INTERVAL, TRANSFER_METRICS_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * create the metrics of the document cache and update them periodically, if the client has a document cache
+	 * @param client the connected client
+	 */
+	protected void startCacheMetrics(Client client) {
+		final DocumentCache cache = client.getDocumentCache();
+		if (null == cache) {
+			return;
+		}
+		OperatorContext context = getOperatorContext();
+		final Metric hits = context.getMetrics().createCustomMetric("nCacheHits", "The number of documents found in the document cache", Metric.Kind.COUNTER);
+		final Metric misses = context.getMetrics().createCustomMetric("nCacheMisses", "The number of documents not found in the document cache", Metric.Kind.COUNTER);
+		final Metric evictions = context.getMetrics().createCustomMetric("nCacheEvictions", "The number of documents removed from the document cache, because it was full or the document expired", Metric.Kind.COUNTER);
+		context.getScheduledExecutorService().scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				hits.setValue(cache.getHits());
+				misses.setValue(cache.getMisses());
+				evictions.setValue(cache.getEvictions());
+			}
+		}, TRANSFER_METRICS_INTERVAL, TRANSFER_METRICS_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+	
 	/**
 	 * set the error string to the tuple attribute configured to hold it
 	 * @param tuple the output tuple to use
@@ -201,13 +329,93 @@ public class AbstractCloudantOperator extends AbstractOperator
 	@Parameter(
 		name="appConfigName", optional = true,
 		description="Specifies the name of the application configuration that contains Cloudant connection related configuration parameters. The keys in the application configuration have the same name as the operator parameters."
-		+ "The following keys are supported: url, username, password, databaseName."
+		+ "The following keys are supported: url, username, password, databaseName, readRateLimit, writeRateLimit, queryRateLimit."
 		+ "If a value is specified in the application configuration and as operator parameter, the operator parameter value takes precedence."
 	)
 	public void setAppConfigName(String appConfigName) {
 		this.appConfigName = appConfigName;
 	}	
 	
+    // connection related parameters ----------------------------------------------------------------
+    
+	@Parameter(
+		name="maxConnections", optional=true,
+		description="The maximum number of connections to the database that the operator keeps open. "
+		+ "Operators that send requests concurrently, see 'maxInFlightRequests', use at least one connection per concurrent request. "
+		+ "The default value is 6."
+	)
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+	
+    // retry related parameters ---------------------------------------------------------------------
+    
+	@Parameter(
+		name="maxRetries", optional=true,
+		description="The maximum number of retries for a request that failed with a transient error. "
+		+ "Transient errors are rate limiting (HTTP status 429), server errors (5xx), timeouts and network errors. "
+		+ "Requests that create a document without id are retried only after rate limiting, because the document might have been created otherwise. "
+		+ "The default value is 3. Set it to 0 to disable retries."
+	)
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	@Parameter(
+		name="retryInitialDelay", optional=true,
+		description="The delay in seconds before the first retry of a failed request. The delay is doubled with each retry and randomized by up to 50 percent. "
+		+ "If the server sends a Retry-After header, its value is used instead. The default value is 0.25."
+	)
+	public void setRetryInitialDelay(double retryInitialDelay) {
+		this.retryInitialDelay = retryInitialDelay;
+	}
+
+	@Parameter(
+		name="retryMaxDelay", optional=true,
+		description="The maximum delay in seconds between two retries of a failed request. The default value is 30.0."
+	)
+	public void setRetryMaxDelay(double retryMaxDelay) {
+		this.retryMaxDelay = retryMaxDelay;
+	}
+
+	@Parameter(
+		name="retryDeadline", optional=true,
+		description="The maximum time in seconds from the first attempt of a request until its last retry. No retry is done that would start later. The default value is 60.0."
+	)
+	public void setRetryDeadline(double retryDeadline) {
+		this.retryDeadline = retryDeadline;
+	}
+	
+    // rate limit related parameters -----------------------------------------------------------------
+    
+	@Parameter(
+		name=READ_RATE_LIMIT_PARAM, optional=true,
+		description="The maximum number of document reads per second. The limit is shared by all operators in the PE that use the same URL and username, "
+		+ "so set it to the read limit of the Cloudant plan, or a bit below it. Requests are delayed to spread them evenly instead of failing with status 429 (too many requests). "
+		+ "The value can also be set in the application configuration. The default value is 0, which disables the limit."
+	)
+	public void setReadRateLimit(double readRateLimit) {
+		this.readRateLimit = readRateLimit;
+	}
+
+	@Parameter(
+		name=WRITE_RATE_LIMIT_PARAM, optional=true,
+		description="The maximum number of document writes per second, each document of a bulk request counts as one write. "
+		+ "The limit is shared by all operators in the PE that use the same URL and username. See parameter 'readRateLimit'. The default value is 0, which disables the limit."
+	)
+	public void setWriteRateLimit(double writeRateLimit) {
+		this.writeRateLimit = writeRateLimit;
+	}
+
+	@Parameter(
+		name=QUERY_RATE_LIMIT_PARAM, optional=true,
+		description="The maximum number of queries per second, e.g. requests to views or _all_docs. "
+		+ "The limit is shared by all operators in the PE that use the same URL and username. See parameter 'readRateLimit'. The default value is 0, which disables the limit."
+	)
+	public void setQueryRateLimit(double queryRateLimit) {
+		this.queryRateLimit = queryRateLimit;
+	}
+	
 	@ContextCheck(compile = false, runtime = true)
     public static void runtimeChecker(OperatorContextChecker checker) {
 		StreamsHelper.validateOutputAttributeRuntime(checker, ERRCODE_ATTR_PARAM, null, MetaType.RSTRING);
@@ -7,11 +7,27 @@
 
 package com.ibm.streamsx.cloudant;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.log4j.Logger;
 
+import com.ibm.streams.operator.Attribute;
 import com.ibm.streams.operator.OperatorContext;
 import com.ibm.streams.operator.OperatorContext.ContextCheck;
 import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamSchema;
 import com.ibm.streams.operator.StreamingData.Punctuation;
 import com.ibm.streams.operator.StreamingInput;
 import com.ibm.streams.operator.StreamingOutput;
@@ -19,6 +35,7 @@ import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.TupleAttribute;
 import com.ibm.streams.operator.Type.MetaType;
 import com.ibm.streams.operator.compile.OperatorContextChecker;
+import com.ibm.streams.operator.meta.CollectionType;
 import com.ibm.streams.operator.model.DefaultAttribute;
 import com.ibm.streams.operator.model.InputPortSet;
 import com.ibm.streams.operator.model.InputPortSet.WindowMode;
@@ -29,10 +46,15 @@ import com.ibm.streams.operator.model.OutputPortSet.WindowPunctuationOutputMode;
 import com.ibm.streams.operator.model.OutputPorts;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streams.operator.model.PrimitiveOperator;
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streams.operator.types.ValueFactory;
 import com.ibm.streamsx.cloudant.client.Client;
 import com.ibm.streamsx.cloudant.client.ClientImpl;
 import com.ibm.streamsx.cloudant.client.Configuration;
+import com.ibm.streamsx.cloudant.client.FetchRequest;
 import com.ibm.streamsx.cloudant.client.FetchResult;
+import com.ibm.streamsx.cloudant.client.JsonProjection;
+import com.ibm.streamsx.cloudant.util.InFlightWindow;
 import com.ibm.streamsx.cloudant.util.StreamsHelper;
 
 /**
@@ -60,6 +82,40 @@ public class FetchDocument extends AbstractCloudantOperator
 	private static final String DOCDATA_ATTR_DEFAULT = "document";
 	private String documentDataAttribute = DOCDATA_ATTR_DEFAULT;
 	
+	// true if the document data attribute is a blob, which gets the document bytes as received
+	private boolean documentDataAsBlob = false;
+	
+	// the max number of documents fetched with one _bulk_get request, bulk mode is enabled if greater than 1
+	private int bulkSize = 1;
+	
+	// the max time in seconds a document id waits in a batch before the documents are fetched
+	private double bulkMaxLatency = 0.1;
+	
+	// the max number of fetch requests running concurrently, requests are sent asynchronously if greater than 1
+	private int maxInFlightRequests = 1;
+	
+	// submit the output tuples in input order, or in the order the requests complete if false
+	private boolean preserveOrder = true;
+	
+	// the read timeout of the requests in seconds
+	private int readTimeout = 5;
+	
+	// the max number of documents in the document cache, 0 disables the cache
+	private int cacheSize = 0;
+	
+	// the max total size of the cached documents in bytes
+	private long cacheMaxBytes = 16 * 1024 * 1024;
+	
+	// the time in seconds the latest version of a document is cached
+	private double cacheTimeToLive = 60;
+	
+	// revalidate expired documents with conditional requests instead of fetching them again
+	private boolean cacheRevalidation = false;
+	
+	// the fields extracted from the documents into output attributes, each as 'path=attribute'
+	private static final String PROJECTION_PARAM = "projection";
+	private List<String> projectionParam = null;
+	
 	// internal members -------------------------------------------------------------------------------
 
 	// the client, encapsulating all Cloudant interaction 
@@ -68,6 +124,40 @@ public class FetchDocument extends AbstractCloudantOperator
 	// Logger for tracing.
     private static Logger logger = Logger.getLogger(FetchDocument.class.getName());
     
+    // the documents to fetch and output tuples of the current batch, in input order
+    private List<FetchRequest> batchRequests = new ArrayList<FetchRequest>();
+    private List<OutputTuple> batchTuples = new ArrayList<OutputTuple>();
+    
+    // the number of the current batch and the timer to fetch it after bulkMaxLatency
+    private long batchNumber = 0;
+    private ScheduledFuture<?> batchTimer = null;
+    
+    // guards the batch members and the submission of the batch results, flushes can be triggered from the timer thread
+    private final Object batchLock = new Object();
+    
+    // the fetch requests running asynchronously, null if requests are sent synchronously
+    private InFlightWindow<List<FetchResult>, Batch> inFlightWindow = null;
+    
+    // extracts the projected fields from the documents, null if no projection is configured
+    private JsonProjection projection = null;
+    
+    // the output attributes and types of the projected fields, in the order of the projection
+    private List<String> projectionAttributes = null;
+    private List<JsonProjection.ValueType> projectionTypes = null;
+    
+    /*
+     * the documents of a fetch request and their output tuples 
+     */
+    private static class Batch {
+    	final List<FetchRequest> requests;
+    	final List<OutputTuple> tuples;
+    	
+    	Batch(List<FetchRequest> requests, List<OutputTuple> tuples) {
+    		this.requests = requests;
+    		this.tuples = tuples;
+    	}
+    }
+    
     // methods ----------------------------------------------------------------------------------------
     
     /**
@@ -83,8 +173,13 @@ public class FetchDocument extends AbstractCloudantOperator
         // create the client and check the configuration
         Configuration config = getConfiguration();
         
-        // use a timeout of 5 seconds
-        config.setReadTimeout((long) 5);
+        // use a short timeout, lookups must not block the stream for long
+        config.setReadTimeout((long) readTimeout);
+        config.setDocumentCacheSize(cacheSize);
+        config.setDocumentCacheMaxBytes(cacheMaxBytes);
+        config.setDocumentCacheTTL((long) (cacheTimeToLive * 1000));
+        config.setDocumentCacheRevalidate(cacheRevalidation);
+        ensureConnections(config, maxInFlightRequests);
         
         // create client
         client = new ClientImpl(config);
@@ -99,6 +194,24 @@ public class FetchDocument extends AbstractCloudantOperator
         	logger.fatal("Cannot connect to database, configuration: " + config.toString());
         	throw new RuntimeException("Connection error");
         }
+        startTransferMetrics(client);
+        startCacheMetrics(client);
+        documentDataAsBlob = getOutput(0).getStreamSchema().getAttribute(documentDataAttribute).getType().getMetaType() == MetaType.BLOB;
+        initProjection();
+        
+        // create the threads for asynchronous requests
+        if (maxInFlightRequests > 1) {
+        	inFlightWindow = new InFlightWindow<List<FetchResult>, Batch>(
+        			Executors.newFixedThreadPool(maxInFlightRequests, context.getThreadFactory()),
+        			maxInFlightRequests,
+        			new InFlightWindow.ResultHandler<List<FetchResult>, Batch>() {
+        				@Override
+        				public void handleResult(List<FetchResult> results, Batch batch) throws Exception {
+        					submitResults(results, batch);
+        				}
+        			},
+        			preserveOrder);
+        }
         
         // all went well 
         logger.trace("Operator " + context.getName() + " Cloudant client has been initialized" + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId());
@@ -124,7 +237,6 @@ public class FetchDocument extends AbstractCloudantOperator
     @Override
     public void process(StreamingInput<Tuple> stream, Tuple tuple) throws Exception {
 
-    	String errorCode = "";
         StreamingOutput<OutputTuple> outStream = getOutput(0);
 
         // get doc id from input tuple
@@ -139,14 +251,64 @@ public class FetchDocument extends AbstractCloudantOperator
 		// Create new output tuple and copy over matching attributes
         OutputTuple outTuple = outStream.newTuple();        
 		outTuple.assign(tuple);
+		
+		if (isBulkMode()) {
+			addToBatch(new FetchRequest(idName, revName), outTuple);
+			return;
+		}
 
         // read the doc from database
-		FetchResult res = client.fetchDocument(idName, revName);
+		fetchDocuments(Collections.singletonList(new FetchRequest(idName, revName)), Collections.singletonList(outTuple));
+    }
+    
+    /*
+     * fetch the documents from the database, either synchronously or asynchronously if maxInFlightRequests is 
+     * greater than 1. In asynchronous mode this call blocks if the max number of requests is in flight. 
+     */
+    private void fetchDocuments(final List<FetchRequest> requests, List<OutputTuple> tuples) throws Exception {
+    	Callable<List<FetchResult>> request = new Callable<List<FetchResult>>() {
+    		@Override
+    		public List<FetchResult> call() {
+    			if (isBulkMode()) {
+    				return client.fetchDocuments(requests);
+    			}
+    			FetchRequest req = requests.get(0);
+    			return Collections.singletonList(client.fetchDocument(req.getId(), req.getRevision()));
+    		}
+    	};
+    	
+    	Batch batch = new Batch(requests, tuples);
+    	if (null == inFlightWindow) {
+    		submitResults(request.call(), batch);
+    	} else {
+    		inFlightWindow.submit(request, batch);
+    	}
+    }
+    
+    /*
+     * submit the output tuples of a fetch request 
+     */
+    private void submitResults(List<FetchResult> results, Batch batch) throws Exception {
+    	for (int i = 0; i < results.size(); i++) {
+    		submitResult(batch.tuples.get(i), results.get(i), batch.requests.get(i).getId());
+    	}
+    }
+    
+    /*
+     * set the document or the error code of the output tuple and submit it
+     */
+    private void submitResult(OutputTuple outTuple, FetchResult res, String idName) throws Exception {
+    	String errorCode = "";
+        StreamingOutput<OutputTuple> outStream = getOutput(0);
+        
 		if (res.isValid()) {
-			outTuple.setString(documentDataAttribute, res.getResult());
+			setDocumentData(outTuple, res);
+			if (null != projection) {
+				errorCode = setProjectedFields(outTuple, res);
+			}
 			logger.trace("Successfully fetched document from database, id: " + idName);
 		} else {
-			outTuple.setString(documentDataAttribute, "");
+			setDocumentData(outTuple, null);
 			errorCode = res.getErrorMessage();
 			if (res.getStatus() == FetchResult.Status.NOTFOUND) {
 				logger.trace("Document not found, id: " + idName);
@@ -165,6 +327,177 @@ public class FetchDocument extends AbstractCloudantOperator
 		}
     }
     
+    /*
+     * set the document data attribute, a blob gets the UTF-8 bytes as received without decoding them
+     * res is null to set an empty value
+     */
+    private void setDocumentData(OutputTuple outTuple, FetchResult res) {
+    	if (documentDataAsBlob) {
+    		outTuple.setBlob(documentDataAttribute, ValueFactory.newBlob((null == res) ? new byte[0] : res.getResultBytes()));
+    	} else {
+    		outTuple.setString(documentDataAttribute, (null == res) ? "" : res.getResult());
+    	}
+    }
+    
+    /*
+     * create the projection from the parameter, the types are taken from the output attributes
+     */
+    private void initProjection() {
+    	if (null == projectionParam) {
+    		return;
+    	}
+    	List<String> paths = new ArrayList<String>();
+    	projectionAttributes = new ArrayList<String>();
+    	projectionTypes = new ArrayList<JsonProjection.ValueType>();
+    	StreamSchema schema = getOutput(0).getStreamSchema();
+    	for (String field : projectionParam) {
+    		int separator = field.lastIndexOf('=');
+    		paths.add(field.substring(0, separator).trim());
+    		String attributeName = field.substring(separator + 1).trim();
+    		projectionAttributes.add(attributeName);
+    		projectionTypes.add(getProjectionType(schema.getAttribute(attributeName)));
+    	}
+    	projection = new JsonProjection(paths, projectionTypes);
+    }
+    
+    /*
+     * extract the projected fields from the document and set the output attributes
+     * fields missing in the document keep the default value of their attribute
+     * returns the error message, empty if the fields were extracted
+     */
+    private String setProjectedFields(OutputTuple outTuple, FetchResult res) {
+    	Object[] values;
+    	try {
+    		Reader document = documentDataAsBlob 
+    				? new InputStreamReader(new ByteArrayInputStream(res.getResultBytes()), StandardCharsets.UTF_8) 
+    				: new StringReader(res.getResult());
+    		values = projection.extract(document);
+    	} catch (IOException | IllegalArgumentException e) {
+    		String error = "Error during projection: " + e.getMessage();
+    		logger.error(error);
+    		return error;
+    	}
+    	for (int i = 0; i < values.length; i++) {
+    		if (null == values[i]) {
+    			continue;
+    		}
+    		String attributeName = projectionAttributes.get(i);
+    		switch (projectionTypes.get(i)) {
+    		case STRING:
+    			outTuple.setString(attributeName, (String) values[i]);
+    			break;
+    		case LONG:
+    			outTuple.setLong(attributeName, (Long) values[i]);
+    			break;
+    		case DOUBLE:
+    			outTuple.setDouble(attributeName, (Double) values[i]);
+    			break;
+    		case BOOLEAN:
+    			outTuple.setBoolean(attributeName, (Boolean) values[i]);
+    			break;
+    		case STRING_LIST:
+    			// list<rstring> attributes hold RString elements
+    			List<RString> strings = new ArrayList<RString>();
+    			for (Object value : (List<?>) values[i]) {
+    				strings.add(new RString((String) value));
+    			}
+    			outTuple.setList(attributeName, strings);
+    			break;
+    		default:
+    			outTuple.setList(attributeName, (List<?>) values[i]);
+    		}
+    	}
+    	return "";
+    }
+    
+    /*
+     * get the type a projected field is converted to for an output attribute, null if the attribute type is not supported
+     */
+    private static JsonProjection.ValueType getProjectionType(Attribute attribute) {
+    	switch (attribute.getType().getMetaType()) {
+    	case RSTRING:
+    	case USTRING:
+    		return JsonProjection.ValueType.STRING;
+    	case INT64:
+    		return JsonProjection.ValueType.LONG;
+    	case FLOAT64:
+    		return JsonProjection.ValueType.DOUBLE;
+    	case BOOLEAN:
+    		return JsonProjection.ValueType.BOOLEAN;
+    	case LIST:
+    		switch (((CollectionType) attribute.getType()).getElementType().getMetaType()) {
+    		case RSTRING:
+    			return JsonProjection.ValueType.STRING_LIST;
+    		case INT64:
+    			return JsonProjection.ValueType.LONG_LIST;
+    		case FLOAT64:
+    			return JsonProjection.ValueType.DOUBLE_LIST;
+    		default:
+    			return null;
+    		}
+    	default:
+    		return null;
+    	}
+    }
+    
+    /*
+     * add the document to the current batch and fetch the batch if it is full 
+     */
+    private void addToBatch(FetchRequest req, OutputTuple outTuple) throws Exception {
+    	synchronized (batchLock) {
+    		batchRequests.add(req);
+    		batchTuples.add(outTuple);
+    		
+    		if (batchRequests.size() >= bulkSize) {
+    			flushBatch();
+    		} else if (batchRequests.size() == 1) {
+    			// first document of a new batch, make sure it does not wait longer than bulkMaxLatency
+    			final long timerBatch = batchNumber;
+    			batchTimer = getOperatorContext().getScheduledExecutorService().schedule(new Runnable() {
+    				@Override
+    				public void run() {
+    					try {
+    						synchronized (batchLock) {
+    							if (timerBatch == batchNumber) {
+    								flushBatch();
+    							}
+    						}
+    					} catch (Exception e) {
+    						logger.error("Error during timed fetch of the batch: " + e.getMessage());
+    					}
+    				}
+    			}, (long) (bulkMaxLatency * 1000), TimeUnit.MILLISECONDS);
+    		}
+    	}
+    }
+    
+    /*
+     * fetch the documents of the current batch with a single _bulk_get request and submit the output tuples in input order.
+     * Must be called while holding the batchLock
+     */
+    private void flushBatch() throws Exception {
+    	if (null != batchTimer) {
+    		batchTimer.cancel(false);
+    		batchTimer = null;
+    	}
+    	batchNumber++;
+    	if (batchRequests.isEmpty()) {
+    		return;
+    	}
+    	
+    	List<FetchRequest> requests = batchRequests;
+    	List<OutputTuple> tuples = batchTuples;
+    	batchRequests = new ArrayList<FetchRequest>();
+    	batchTuples = new ArrayList<OutputTuple>();
+    	
+    	logger.trace("Fetching batch of " + requests.size() + " documents");
+    	fetchDocuments(requests, tuples);
+    }
+    
+    private boolean isBulkMode() {
+    	return bulkSize > 1;
+    }
+    
     /**
      * Process an incoming punctuation that arrived on the specified port.
      * @param stream Port the punctuation is arriving on.
@@ -173,6 +506,15 @@ public class FetchDocument extends AbstractCloudantOperator
      */
     @Override
     public void processPunctuation(StreamingInput<Tuple> stream, Punctuation mark) throws Exception {
+    	// fetch pending documents, so that the punctuation follows their output tuples
+    	if (isBulkMode()) {
+    		synchronized (batchLock) {
+    			flushBatch();
+    		}
+    	}
+    	if (null != inFlightWindow && (mark == Punctuation.FINAL_MARKER || isPreservePunctuation())) {
+    		inFlightWindow.drain();
+    	}
     	if (mark == Punctuation.WINDOW_MARKER) {
     		if (isPreservePunctuation()) {
     			super.processPunctuation(stream, mark);
@@ -191,6 +533,24 @@ public class FetchDocument extends AbstractCloudantOperator
     public synchronized void shutdown() throws Exception {
         OperatorContext context = getOperatorContext();
         logger.trace("Operator " + context.getName() + " shutting down in PE: " + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId() );
+        // fetch documents that are still pending
+        if (isBulkMode() && null != client) {
+        	synchronized (batchLock) {
+        		try {
+        			flushBatch();
+        		} catch (Exception e) {
+        			logger.error("Error during fetch of the batch on shutdown: " + e.getMessage());
+        		}
+        	}
+        }
+        // wait for the requests in flight
+        if (null != inFlightWindow) {
+        	try {
+        		inFlightWindow.shutdown();
+        	} catch (Exception e) {
+        		logger.error("Error during completion of pending requests on shutdown: " + e.getMessage());
+        	}
+        }
         // shutdown cloudant client
         if (null != client) {
         	client.disconnect();
@@ -219,21 +579,161 @@ public class FetchDocument extends AbstractCloudantOperator
 	
 	@Parameter(
 		name=DOCDATA_ATTR_PARAM, optional=true,
-		description="This parameter specifies the attribute name in the output tuple that gets the documents JSON content. It must be of type 'rstring'. If this parameter is not set, an attribute named 'document' is expected."
+		description="This parameter specifies the attribute name in the output tuple that gets the documents JSON content. It must be of type 'rstring' or 'blob'. "
+		+ "A 'blob' attribute gets the UTF-8 bytes of the document exactly as received from the database, without decoding them to a string. "
+		+ "If this parameter is not set, an attribute named 'document' is expected."
 	)
 	public void setDocumentDataAttribute(String documentDataAttribute) {
 		this.documentDataAttribute = documentDataAttribute;
 	}
 	
+	@Parameter(
+		name="bulkSize", optional=true,
+		description="This parameter specifies the maximum number of documents that are fetched with one _bulk_get request. "
+		+ "If the value is greater than 1, the operator collects the document ids and fetches the documents in batches. A batch is fetched when it contains 'bulkSize' ids, "
+		+ "when its oldest id waited 'bulkMaxLatency' seconds, or when a punctuation is received. "
+		+ "The output tuples are submitted in input order after the batch is fetched. Documents that do not exist get the same error as in single fetches. "
+		+ "The default value is 1, which fetches each document with a separate request."
+	)
+	public void setBulkSize(int bulkSize) {
+		this.bulkSize = bulkSize;
+	}
+
+	@Parameter(
+		name="bulkMaxLatency", optional=true,
+		description="This parameter specifies the maximum time in seconds a document id waits in a batch before the batch is fetched. "
+		+ "It is used only if 'bulkSize' is greater than 1. The default value is 0.1."
+	)
+	public void setBulkMaxLatency(double bulkMaxLatency) {
+		this.bulkMaxLatency = bulkMaxLatency;
+	}
+	
+	@Parameter(
+		name="maxInFlightRequests", optional=true,
+		description="This parameter specifies the maximum number of fetch requests that are sent to the database concurrently. "
+		+ "If the value is greater than 1, the requests are sent asynchronously and the processing of input tuples blocks only if this number of requests is in flight. "
+		+ "The output tuples are submitted in input order, unless 'preserveOrder' is false. Pending requests are completed on final punctuation and on shutdown. "
+		+ "The connection pool of the operator is enlarged to this number of connections if 'maxConnections' is smaller. The default value is 1, which sends the requests synchronously."
+	)
+	public void setMaxInFlightRequests(int maxInFlightRequests) {
+		this.maxInFlightRequests = maxInFlightRequests;
+	}
+
+	@Parameter(
+		name="preserveOrder", optional=true,
+		description="If set to false, the output tuples of asynchronous requests are submitted as soon as their request completes, "
+		+ "so a slow request does not delay the output of later requests. It is used only if 'maxInFlightRequests' is greater than 1. "
+		+ "The default value is true, which submits the output tuples in input order."
+	)
+	public void setPreserveOrder(boolean preserveOrder) {
+		this.preserveOrder = preserveOrder;
+	}
+
+	@Parameter(
+		name="readTimeout", optional=true,
+		description="This parameter specifies the timeout in seconds for reading the response of a fetch request. The default value is 5."
+	)
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	@Parameter(
+		name="cacheSize", optional=true,
+		description="This parameter specifies the maximum number of documents kept in a cache of recently fetched documents. "
+		+ "Documents found in the cache are not fetched from the database again. If the cache is full, the least recently used documents are removed. "
+		+ "Documents fetched with a revision never change and stay in the cache until they are removed, documents fetched without revision are removed after 'cacheTimeToLive'. "
+		+ "The number of cache hits, misses and evictions are available as metrics. The default value is 0, which disables the cache."
+	)
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	@Parameter(
+		name="cacheMaxBytes", optional=true,
+		description="This parameter specifies the maximum total size of the cached documents in bytes, counted in their UTF-8 encoding. "
+		+ "It is used only if 'cacheSize' is greater than 0. The default value is 16777216 (16MB)."
+	)
+	public void setCacheMaxBytes(long cacheMaxBytes) {
+		this.cacheMaxBytes = cacheMaxBytes;
+	}
+
+	@Parameter(
+		name="cacheTimeToLive", optional=true,
+		description="This parameter specifies the time in seconds the latest version of a document, fetched without revision, is kept in the cache. "
+		+ "Within this time, changes of the document in the database are not seen. It is used only if 'cacheSize' is greater than 0. The default value is 60."
+	)
+	public void setCacheTimeToLive(double cacheTimeToLive) {
+		this.cacheTimeToLive = cacheTimeToLive;
+	}
+
+	@Parameter(
+		name="cacheRevalidation", optional=true,
+		description="If set to true, documents whose 'cacheTimeToLive' has expired are kept in the cache together with their revision. "
+		+ "The next fetch of such a document is sent as a conditional request (If-None-Match), and if the database responds that the document was not modified (304), "
+		+ "the cached document is used and counted as cache hit, so only a small response is transferred for unchanged documents. "
+		+ "This allows short values for 'cacheTimeToLive', down to 0 to check the revision on every fetch. "
+		+ "Bulk fetches ('bulkSize' greater than 1) cannot be conditional, they fetch expired documents again. "
+		+ "It is used only if 'cacheSize' is greater than 0. The default value is false."
+	)
+	public void setCacheRevalidation(boolean cacheRevalidation) {
+		this.cacheRevalidation = cacheRevalidation;
+	}
+
+	@Parameter(
+		name=PROJECTION_PARAM, optional=true, cardinality=-1,
+		description="This parameter specifies fields that are extracted from the fetched documents into output attributes, "
+		+ "so downstream operators do not need to parse the documents again. Each value has the form 'path=attribute', "
+		+ "where path is a list of member names separated by dots, for example 'address.city=city'. "
+		+ "The fields are extracted with a streaming parser that skips all other members of the document. "
+		+ "Supported attribute types are 'rstring', 'ustring', 'int64', 'float64', 'boolean', 'list<rstring>', 'list<int64>' and 'list<float64>'. "
+		+ "A JSON object or array extracted into a string attribute is set as JSON text. "
+		+ "Attributes of fields that are missing in a document or null keep their default value. "
+		+ "If a field cannot be converted to the attribute type, the error is set in the error attribute."
+	)
+	public void setProjection(List<String> projection) {
+		this.projectionParam = projection;
+	}
+	
 	@ContextCheck(compile = true)
     public static void compiletimeChecker(OperatorContextChecker checker) {
 		StreamsHelper.validateInputAttribute(checker, DOCID_ATTR_PARAM, DOCID_ATTR_DEFAULT, MetaType.RSTRING);
-		StreamsHelper.validateOutputAttribute(checker, DOCDATA_ATTR_PARAM, DOCDATA_ATTR_DEFAULT, MetaType.RSTRING);
+		StreamsHelper.validateOutputAttribute(checker, DOCDATA_ATTR_PARAM, DOCDATA_ATTR_DEFAULT, MetaType.RSTRING, MetaType.BLOB);
 	}	
 	
 	@ContextCheck(compile = false, runtime = true)
     public static void runtimeChecker(OperatorContextChecker checker) {
-		StreamsHelper.validateOutputAttributeRuntime(checker, DOCDATA_ATTR_PARAM, DOCDATA_ATTR_DEFAULT, MetaType.RSTRING);
+		StreamsHelper.validateOutputAttributeRuntime(checker, DOCDATA_ATTR_PARAM, DOCDATA_ATTR_DEFAULT, MetaType.RSTRING, MetaType.BLOB);
+		
+		// check the output attributes of the projected fields
+		OperatorContext context = checker.getOperatorContext();
+		if (context.getParameterNames().contains(PROJECTION_PARAM) && !context.getStreamingOutputs().isEmpty()) {
+			StreamSchema schema = context.getStreamingOutputs().get(0).getStreamSchema();
+			List<String> paths = new ArrayList<String>();
+			List<JsonProjection.ValueType> types = new ArrayList<JsonProjection.ValueType>();
+			for (String field : context.getParameterValues(PROJECTION_PARAM)) {
+				int separator = field.lastIndexOf('=');
+				if (separator < 0) {
+					checker.setInvalidContext("PROJECTION_INVALID, expected 'path=attribute': " + field, new Object[0]);
+					return;
+				}
+				Attribute attr = schema.getAttribute(field.substring(separator + 1).trim());
+				if (null == attr) {
+					checker.setInvalidContext("SPECIFIED_OUTPUT_ATTRIBUTE_NOT_FOUND: " + field, new Object[0]);
+					return;
+				}
+				if (null == getProjectionType(attr)) {
+					checker.setInvalidContext("SPECIFIED_ATTRIBUTE_WRONG_TYPE, unsupported type for projection: " + field, new Object[0]);
+					return;
+				}
+				paths.add(field.substring(0, separator).trim());
+				types.add(getProjectionType(attr));
+			}
+			try {
+				new JsonProjection(paths, types);
+			} catch (IllegalArgumentException e) {
+				checker.setInvalidContext("PROJECTION_INVALID: " + e.getMessage(), new Object[0]);
+			}
+		}
 	}
 	
 	// documentation ------------------------------------------------------------------------------------------
@@ -241,7 +741,8 @@ public class FetchDocument extends AbstractCloudantOperator
 	// TODO improve
 	public static final String operatorDescription =
 		"This operator fetches documents from the configured Cloudant database and sends them as JSON strings to downstream operators."
-		+ "The id and the revision of the document to retrieve can be specified.";
+		+ "The id and the revision of the document to retrieve can be specified."
+		+ "Optionally document ids are collected and the documents are fetched in batches using the _bulk_get API, see parameter 'bulkSize'.";
 
 	// TODO improve 
 	public static final String iport0Description =
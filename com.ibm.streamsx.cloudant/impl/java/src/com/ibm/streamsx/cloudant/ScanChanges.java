@@ -7,6 +7,12 @@
 
 package com.ibm.streamsx.cloudant;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.apache.log4j.Logger;
 
 import com.cloudant.client.api.Changes;
@@ -16,14 +22,17 @@ import com.google.gson.JsonObject;
 import com.ibm.streams.operator.OperatorContext;
 import com.ibm.streams.operator.OperatorContext.ContextCheck;
 import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamingData.Punctuation;
 import com.ibm.streams.operator.StreamingOutput;
 import com.ibm.streams.operator.Type.MetaType;
 import com.ibm.streams.operator.compile.OperatorContextChecker;
+import com.ibm.streams.operator.metrics.Metric;
 import com.ibm.streams.operator.model.OutputPortSet;
 import com.ibm.streams.operator.model.OutputPortSet.WindowPunctuationOutputMode;
 import com.ibm.streams.operator.model.OutputPorts;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streams.operator.model.PrimitiveOperator;
+import com.ibm.streamsx.cloudant.client.ChangesParser;
 import com.ibm.streamsx.cloudant.client.ChangesReader;
 import com.ibm.streamsx.cloudant.client.Client;
 import com.ibm.streamsx.cloudant.client.ClientImpl;
@@ -97,6 +106,21 @@ public class ScanChanges extends AbstractCloudantOperator
 	// document filter to set on the _changes API 
 	private String documentFilter = null;
 	
+	// the number of changes per request while catching up with the history, 0 disables catch-up mode
+	private int catchUpBatchSize = 0;
+	
+	// the number of pending changes below which the operator switches from catch-up to the continuous feed
+	private int catchUpThreshold = 1000;
+	
+	// the number of changes per computed sequence value (seq_interval)
+	private int sequenceInterval = 1;
+	
+	// the number of key ranges read in parallel for the initial snapshot, 0 reads the changes feed only
+	private int bootstrapParallelism = 0;
+	
+	// the number of documents per request while reading the snapshot
+	private int bootstrapPageSize = 1000;
+	
 	// internal members -----------------------------------------------------------------------
 	
 	// the client, encapsulating all Cloudant interaction 
@@ -116,6 +140,14 @@ public class ScanChanges extends AbstractCloudantOperator
 	
 	// the manager used to get/store sequence values across job restarts
 	private SequenceManager seqMgr = null;
+	
+	// the parallel channel of this operator and the number of channels, -1 and 0 outside of a parallel region
+	private int channel = -1;
+	private int maxChannels = 0;
+	
+	// the reconnects of the changes reader and the changes received again because of them
+	private Metric reconnectsMetric = null;
+	private Metric replayedChangesMetric = null;
 
     /**
      * Initialize this operator. Called once before any tuples are processed.
@@ -157,9 +189,20 @@ public class ScanChanges extends AbstractCloudantOperator
          * operator is complete.
          */
         processThread.setDaemon(false);
+        
+        // in a parallel region each channel submits the changes of its share of the document ids
+        channel = context.getChannel();
+        maxChannels = context.getMaxChannels();
+        if (channel >= 0) {
+        	logger.info("Operator " + context.getName() + " reads the changes of channel " + channel + " of " + maxChannels);
+        }
 
         // create the client and check the configuration
         Configuration config = getConfiguration();
+        config.setChangesBatchSize(catchUpBatchSize);
+        config.setChangesCatchUpThreshold(catchUpThreshold);
+        config.setChangesSeqInterval(sequenceInterval);
+        ensureConnections(config, getBootstrapRanges());
         
         // bail out if the configuration has an IAMApiKey set
         if (config.getIAMApiKey() != null) {
@@ -179,6 +222,9 @@ public class ScanChanges extends AbstractCloudantOperator
         	logger.fatal("Cannot connect to database, configuration: " + config.toString());
         	throw new RuntimeException("Connection error");
         }
+        startTransferMetrics(client);
+        reconnectsMetric = context.getMetrics().createCustomMetric("nReconnects", "The number of times the changes feed was reconnected after it was closed or failed", Metric.Kind.COUNTER);
+        replayedChangesMetric = context.getMetrics().createCustomMetric("nReplayedChanges", "The number of changes received again after reconnects, because no sequence value was received for them", Metric.Kind.COUNTER);
         
         logger.trace("Operator " + context.getName() + " Cloudant client has been initialized" + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId());
     }
@@ -216,6 +262,15 @@ public class ScanChanges extends AbstractCloudantOperator
     	boolean getRevision = documentDataAttribute == null ? false : true;
     	boolean getSeqNo = documentSequenceValueAttribute == null ? false : true;
     	
+    	// read the snapshot of all documents first, the changes feed continues at the sequence value of the snapshot
+    	if (bootstrapParallelism > 0 && "0".equals(since)) {
+    		since = bootstrap(out, getDocument, getRevision, getSeqNo);
+    		if (null == since) {
+    			logger.error("Source thread interrupted during bootstrap");
+    			return;
+    		}
+    	}
+    	
     	// create changes reader 
     	reader = client.getReader(false, since, getDocument);
     	if (null == reader) {
@@ -231,13 +286,22 @@ public class ScanChanges extends AbstractCloudantOperator
     		if (change.hasChange()) {
     			changeCount++;
 
-    			// remember sequence value
-    			lastSequenceValue = change.getSeq();
+    			// acknowledge seqNo every 1000 changes, including the changes of other channels,
+    			// before this change is taken into account as it is not submitted yet
+    			if (null != seqMgr && changeCount >= 1000) {
+    				changeCount = 0;
+    				seqMgr.updateOrCreate(lastSequenceValue);
+    			}
+
+    			// remember sequence value, with a sequence interval greater than 1 most changes have none
+    			if (null != change.getSeq()) {
+    				lastSequenceValue = change.getSeq();
+    			}
     			logger.trace("Change received, sequenceValue=" + lastSequenceValue);
     			
     			String docId = change.getId();
-    			// dont output anything if we got the update for the sequence manager doc
-            	if (sequenceValueDocumentId != null && sequenceValueDocumentId.equals(docId)) {
+    			// dont output anything if we got the update for a sequence manager doc or a change of another channel
+            	if (isSequenceValueDocument(docId) || !isChannelDocument(docId)) {
             		continue;
             	}
     			
@@ -248,7 +312,7 @@ public class ScanChanges extends AbstractCloudantOperator
             	tuple.setBoolean(isDeletedAttribute, isDeleted);
 
             	// optionally set sequence value as string
-            	if (getSeqNo) {
+            	if (getSeqNo && null != lastSequenceValue) {
             		tuple.setString(documentSequenceValueAttribute, lastSequenceValue);
             	}
             	
@@ -266,18 +330,12 @@ public class ScanChanges extends AbstractCloudantOperator
 
             	// submit result
             	out.submit(tuple);
-            	
-            	// acknowledge seqNo, every 1000 changes
-            	if (null != seqMgr) {
-            		if (changeCount % 1000 == 0) {
-            			changeCount = 0;
-            			seqMgr.updateOrCreate(lastSequenceValue);
-            		}
-            	}
 
     		} else {
-    			// heartbeat or error received
-    	    	logger.trace("Reader heartbeat received");    			
+    			// heartbeat or error received, the reader reconnects in this case
+    	    	logger.trace("Reader heartbeat received");
+    	    	reconnectsMetric.setValue(reader.getReconnects());
+    	    	replayedChangesMetric.setValue(reader.getReplayedChanges());
     		}
     	}
     	
@@ -285,6 +343,149 @@ public class ScanChanges extends AbstractCloudantOperator
     	
     }
     
+    /*
+     * Read a snapshot of all documents with _all_docs, in parallel key ranges, and submit a tuple for each.
+     * The update sequence value is captured before, so the changes feed started there gets every change made
+     * while the snapshot is read. Documents changed meanwhile can be submitted twice (at-least-once).
+     * A window punctuation separates the snapshot from the changes.
+     * Returns the captured sequence value, or null if the thread was interrupted
+     */
+    private String bootstrap(final StreamingOutput<OutputTuple> out, final boolean getDocument, final boolean getRevision, final boolean getSeqNo) throws Exception {
+    	final String updateSeq = client.getUpdateSeq();
+    	List<String> boundaries = client.getKeyRangeBoundaries(getBootstrapRanges());
+    	logger.info("Bootstrap reads snapshot at sequenceValue=" + updateSeq + " in " + (boundaries.size() + 1) + " key ranges");
+    	
+    	// each range is read by its own thread, the connection pool has a connection for each
+    	ExecutorService executor = Executors.newFixedThreadPool(boundaries.size() + 1, getOperatorContext().getThreadFactory());
+    	long count = 0;
+    	try {
+    		List<Future<Long>> ranges = new ArrayList<Future<Long>>();
+    		for (int i = 0; i <= boundaries.size(); i++) {
+    			final String startKey = (i == 0) ? null : boundaries.get(i - 1);
+    			final String endKey = (i == boundaries.size()) ? null : boundaries.get(i);
+    			ranges.add(executor.submit(() -> scanRange(out, startKey, endKey, updateSeq, getDocument, getRevision, getSeqNo)));
+    		}
+    		for (Future<Long> range : ranges) {
+    			count += range.get();
+    		}
+    	} catch (InterruptedException e) {
+    		return null;
+    	} finally {
+    		executor.shutdownNow();
+    	}
+    	logger.info("Bootstrap submitted " + count + " documents");
+    	
+    	out.punctuate(Punctuation.WINDOW_MARKER);
+    	lastSequenceValue = updateSeq;
+    	if (null != seqMgr) {
+    		seqMgr.updateOrCreate(lastSequenceValue);
+    	}
+    	return updateSeq;
+    }
+    
+    /*
+     * the number of key ranges this operator reads in parallel during the bootstrap,
+     * in a parallel region the channels share the bootstrapParallelism
+     */
+    private int getBootstrapRanges() {
+    	if (maxChannels <= 1) {
+    		return bootstrapParallelism;
+    	}
+    	return Math.max(1, (bootstrapParallelism + maxChannels - 1) / maxChannels);
+    }
+    
+    /*
+     * read the documents of a key range page by page and submit them, the end key is excluded
+     * in a parallel region the ids are read first, and only the documents of this channel are fetched by id
+     * returns the number of submitted documents
+     */
+    private long scanRange(StreamingOutput<OutputTuple> out, String startKey, String endKey, String seq, boolean getDocument, boolean getRevision, boolean getSeqNo) throws Exception {
+    	ReaderResult row = new ReaderResult();
+    	long count = 0;
+    	boolean skipStartKey = false;
+    	boolean fetchChannelDocuments = getDocument && maxChannels > 1;
+    	while (!Thread.currentThread().isInterrupted()) {
+    		ChangesParser page = client.readAllDocs(startKey, skipStartKey, endKey, bootstrapPageSize, getDocument && !fetchChannelDocuments);
+    		List<String> channelIds = new ArrayList<String>();
+    		int rows = 0;
+    		while (page.next(row, getDocument)) {
+    			rows++;
+    			
+    			// the next page starts after the last id of this page
+    			startKey = row.getId();
+    			if (isSequenceValueDocument(startKey) || !isChannelDocument(startKey)) {
+    				continue;
+    			}
+    			if (fetchChannelDocuments) {
+    				channelIds.add(startKey);
+    			} else {
+    				submitSnapshotDocument(out, row, seq, getDocument, getRevision, getSeqNo);
+    				count++;
+    			}
+    		}
+    		if (!channelIds.isEmpty()) {
+    			ChangesParser documents = client.readAllDocs(channelIds, true);
+    			while (documents.next(row, true)) {
+    				// documents deleted since the ids were read are skipped, the changes feed delivers the deletion
+    				if (null != row.getId() && null != row.getDoc()) {
+    					submitSnapshotDocument(out, row, seq, getDocument, getRevision, getSeqNo);
+    					count++;
+    				}
+    			}
+    		}
+    		if (rows < bootstrapPageSize) {
+    			break;
+    		}
+    		skipStartKey = true;
+    	}
+    	return count;
+    }
+    
+    /*
+     * submit a document of the snapshot, the sequence value is the one captured before the snapshot
+     */
+    private void submitSnapshotDocument(StreamingOutput<OutputTuple> out, ReaderResult row, String seq, boolean getDocument, boolean getRevision, boolean getSeqNo) throws Exception {
+    	OutputTuple tuple = out.newTuple();
+    	tuple.setString(documentIdAttribute, row.getId());
+    	tuple.setBoolean(isDeletedAttribute, false);
+    	if (getSeqNo) {
+    		tuple.setString(documentSequenceValueAttribute, seq);
+    	}
+    	if (getDocument) {
+    		tuple.setString(documentDataAttribute, row.getDoc());
+    	}
+    	if (getRevision) {
+    		tuple.setString(documentRevisionAttribute, row.getRev());
+    	}
+    	out.submit(tuple);
+    }
+    
+    /*
+     * in a parallel region a change belongs to the channel its document id hashes to,
+     * String.hashCode() is specified, so all channels agree on it
+     */
+    private boolean isChannelDocument(String docId) {
+    	return maxChannels <= 1 || Math.floorMod(docId.hashCode(), maxChannels) == channel;
+    }
+    
+    /*
+     * in a parallel region each channel stores its sequence value in its own document, the channel index is appended to the id
+     */
+    private String getSequenceValueDocumentId() {
+    	return (channel < 0) ? sequenceValueDocumentId : sequenceValueDocumentId + "-" + channel;
+    }
+    
+    /*
+     * true for the sequence value documents of all channels
+     */
+    private boolean isSequenceValueDocument(String docId) {
+    	if (null == sequenceValueDocumentId || !docId.startsWith(sequenceValueDocumentId)) {
+    		return false;
+    	}
+    	String suffix = docId.substring(sequenceValueDocumentId.length());
+    	return suffix.isEmpty() || (channel >= 0 && suffix.matches("-[0-9]+"));
+    }
+    
     /*
      * get the first sequence number  
      * @return
@@ -306,7 +507,7 @@ public class ScanChanges extends AbstractCloudantOperator
     	
     	// use the sequence value manager
     	if (sequenceValueDocumentId != null) {
-    		seqMgr = new DefaultSequenceManager(client, sequenceValueDocumentId);
+    		seqMgr = new DefaultSequenceManager(client, getSequenceValueDocumentId());
     		
     		// initialize
     		if (!seqMgr.initialize()) {
@@ -347,7 +548,9 @@ public class ScanChanges extends AbstractCloudantOperator
         Logger.getLogger(this.getClass()).trace("Operator " + context.getName() + " shutting down in PE: " + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId() );
 
         // stop the feed if active
-        reader.stopReading();
+        if (null != reader) {
+        	reader.stopReading();
+        }
 
         // acknowledge seqNo
     	if (null != seqMgr) {
@@ -393,7 +596,9 @@ public class ScanChanges extends AbstractCloudantOperator
 		+ "If this parameter is set, the operator will track the sequence value in this document. On startup the initial sequence value is retrieved from this document."
 		+ "If the document does not exists in the datbase, it is created and populated with the sequence number as determined via the 'startSequenceValueMode' parameter."
 		+ "If the document does not exist and the parameter 'startSequenceValueMode' is set to 'fromDatabase' this is treated as an error and the operator throws an exception."
-		+ "On shutdown of the application the latest sequence value processed is stored in this document, so the replication can be continued at that point after an application restart."
+		+ "On shutdown of the application the latest sequence value processed is stored in this document, so the replication can be continued at that point after an application restart. "
+		+ "In a parallel region each channel stores its sequence value in its own document, the id is suffixed with '-' and the channel index. "
+		+ "If the width of the parallel region changes, the documents need to be reset, because the document ids are distributed differently across the channels."
 	)
 	public void setSequenceValueDocumentId(String sequenceValueDocumentId) {
 		this.sequenceValueDocumentId = sequenceValueDocumentId;
@@ -416,6 +621,65 @@ public class ScanChanges extends AbstractCloudantOperator
 		this.documentFilter = documentFilter;
 	}
 
+	@Parameter(
+		name="catchUpBatchSize", optional=true,
+		description="If this parameter is greater than 0, the operator starts in catch-up mode. It reads the changes in pages of this size from the normal changes feed "
+		+ "instead of the continuous feed, which is much faster when a large history is replayed, for example with 'startSequenceValueMode' 'all' or an old stored sequence value. "
+		+ "When the number of pending changes reported with a page is at most 'catchUpThreshold', the operator switches to the continuous feed. "
+		+ "A page is read completely before its changes are submitted, so the page size times the document size must fit into memory. "
+		+ "The default value is 0, which reads the continuous feed only."
+	)
+	public void setCatchUpBatchSize(int catchUpBatchSize) {
+		this.catchUpBatchSize = catchUpBatchSize;
+	}
+
+	@Parameter(
+		name="catchUpThreshold", optional=true,
+		description="The number of pending changes at which the operator switches from catch-up mode to the continuous feed. "
+		+ "It is used only if 'catchUpBatchSize' is greater than 0. The default value is 1000."
+	)
+	public void setCatchUpThreshold(int catchUpThreshold) {
+		this.catchUpThreshold = catchUpThreshold;
+	}
+
+	@Parameter(
+		name="sequenceInterval", optional=true,
+		description="The database computes a sequence value only for every n-th change (parameter 'seq_interval' in the Cloudant _changes API), which reduces the load of reading the feed. "
+		+ "Changes without sequence value get the last sequence value received in the sequence value attribute. In catch-up mode, the last change of each page gets the sequence value of the page. "
+		+ "After a restart, up to this number of changes can be received again. The default value is 1, which computes the sequence value of each change."
+	)
+	public void setSequenceInterval(int sequenceInterval) {
+		this.sequenceInterval = sequenceInterval;
+	}
+
+	@Parameter(
+		name="bootstrapParallelism", optional=true,
+		description="If this parameter is greater than 0 and the operator starts at sequence value 0, it reads a snapshot of all documents before the changes feed. "
+		+ "The current sequence value of the database is captured, the document ids are split into this number of key ranges with about the same number of documents, "
+		+ "and the ranges are read in parallel with the _all_docs API. The connection pool of the operator is enlarged to one connection per range if 'maxConnections' is smaller. "
+		+ "In a parallel region the channels share the ranges: each channel reads this number divided by the number of channels (at least 1) of ranges. "
+		+ "Each channel reads the ids of all documents, and fetches only the documents whose id hashes to the channel, "
+		+ "so each document is submitted by the same channel as its changes and is transferred only once. "
+		+ "This is much faster than replaying the complete changes history. "
+		+ "After the snapshot a window punctuation is submitted, and the changes feed continues at the captured sequence value. "
+		+ "Documents changed while the snapshot is read are submitted again as changes, so they can be received twice. Deleted documents are not part of the snapshot. "
+		+ "The snapshot tuples are submitted by multiple threads, they are not ordered by id. "
+		+ "The default value is 0, which reads the changes feed only."
+	)
+	public void setBootstrapParallelism(int bootstrapParallelism) {
+		this.bootstrapParallelism = bootstrapParallelism;
+	}
+
+	@Parameter(
+		name="bootstrapPageSize", optional=true,
+		description="The number of documents read with one request while reading the snapshot. It is used only if 'bootstrapParallelism' is greater than 0. "
+		+ "A page is read completely before its documents are submitted, so the page size times the document size times the parallelism must fit into memory. "
+		+ "The default value is 1000."
+	)
+	public void setBootstrapPageSize(int bootstrapPageSize) {
+		this.bootstrapPageSize = bootstrapPageSize;
+	}
+
 	/**
 	 * check the parameter value combinations for the sequence value handling at runtime 
 	 */
@@ -437,6 +701,11 @@ public class ScanChanges extends AbstractCloudantOperator
 			}
 		}
 
+		if (bootstrapParallelism > 0 && bootstrapPageSize < 1) {
+			logger.fatal("BOOTSTRAP_PAGESIZE_INVALID");
+			return false;
+		}
+
 		if (startSequenceValueMode == StartSequenceValueMode.fromParameter) {
 			if (null == startSequenceValue) {
 				logger.fatal("MODE_PARAM_BUT_SEQVAL_PARAM_MISSING");
@@ -511,7 +780,10 @@ public class ScanChanges extends AbstractCloudantOperator
 	
 	// TODO improve
 	public static final String operatorDescription =
-		"This operator uses the Cloudant changes API to get all changes made to documents in the database.";
+		"This operator uses the Cloudant changes API to get all changes made to documents in the database. "
+		+ "The operator can be used in a parallel region (@parallel annotation). Each channel reads the changes feed and submits only the changes "
+		+ "of the documents whose id hashes to its channel index, so the changes are processed by all channels in parallel, and the changes of a document "
+		+ "are always processed by the same channel in order.";
 
 	// TODO improve
 	public static final String oport0Description =
@@ -7,6 +7,16 @@
 
 package com.ibm.streamsx.cloudant;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.log4j.Logger;
 
 import com.ibm.streams.operator.OperatorContext;
@@ -19,6 +29,8 @@ import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.TupleAttribute;
 import com.ibm.streams.operator.Type.MetaType;
 import com.ibm.streams.operator.compile.OperatorContextChecker;
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.types.Blob;
 import com.ibm.streams.operator.model.DefaultAttribute;
 import com.ibm.streams.operator.model.InputPortSet;
 import com.ibm.streams.operator.model.InputPortSet.WindowMode;
@@ -32,8 +44,13 @@ import com.ibm.streams.operator.model.PrimitiveOperator;
 import com.ibm.streamsx.cloudant.client.Client;
 import com.ibm.streamsx.cloudant.client.ClientImpl;
 import com.ibm.streamsx.cloudant.client.Configuration;
+import com.ibm.streamsx.cloudant.client.JsonString;
+import com.ibm.streamsx.cloudant.client.StoreRequest;
 import com.ibm.streamsx.cloudant.client.StoreResult;
+import com.ibm.streamsx.cloudant.util.AdaptiveBatchController;
+import com.ibm.streamsx.cloudant.util.InFlightWindow;
 import com.ibm.streamsx.cloudant.util.StreamsHelper;
+import com.ibm.streamsx.cloudant.util.WorkerLanes;
 
 /**
  * Store a document into the Cloudant database 
@@ -59,6 +76,53 @@ public class StoreDocument extends AbstractCloudantOperator
 	private static final String DOCREV_ATTR_PARAM = "documentRevisionAttribute";
 	private TupleAttribute<Tuple, String> documentRevisionAttribute = null;
 
+	// the attributes containing data, name and content type of an attachment to store instead of a document (optional)
+	private static final String ATTACHMENT_ATTR_PARAM = "attachmentAttribute";
+	private TupleAttribute<Tuple, Blob> attachmentAttribute = null;
+	private TupleAttribute<Tuple, String> attachmentNameAttribute = null;
+	private TupleAttribute<Tuple, String> contentTypeAttribute = null;
+
+	// the names of the output attributes receiving the id and the new revision of the stored document (optional)
+	private static final String STORED_ID_ATTR_PARAM = "storedIdAttribute";
+	private String storedIdAttribute = null;
+	private static final String STORED_REV_ATTR_PARAM = "storedRevisionAttribute";
+	private String storedRevisionAttribute = null;
+
+	// the name of the output attribute receiving the HTTP status code of the store operation (optional)
+	private static final String HTTP_STATUS_ATTR_PARAM = "httpStatusCodeAttribute";
+	private String httpStatusCodeAttribute = null;
+
+	// the max number of documents sent in one _bulk_docs request, bulk mode is enabled if greater than 1
+	private int bulkSize = 1;
+	
+	// the max number of document bytes sent in one _bulk_docs request
+	private int bulkMaxBytes = 1048576;
+	
+	// the max time in seconds a document waits in a batch before it is written to the database
+	private double bulkMaxLatency = 1.0;
+	
+	// the target latency in seconds of a _bulk_docs request, enables adaptive batch sizing if set
+	private Double bulkTargetLatency = null;
+	
+	// keep only the latest version of documents with the same id within a batch
+	private boolean coalesceById = false;
+	
+	// the name of the output attribute that indicates if a document was replaced by a later version (optional)
+	private static final String COALESCED_ATTR_PARAM = "coalescedAttribute";
+	private String coalescedAttribute = null;
+	
+	// the max number of store requests running concurrently, requests are sent asynchronously if greater than 1
+	private int maxInFlightRequests = 1;
+	
+	// the number of lanes writing documents concurrently, documents with the same id are written sequentially in the same lane
+	private int workerLanes = 0;
+	
+	// compress the request bodies with gzip
+	private boolean compressRequests = false;
+	
+	// the max number of document revisions remembered to update existing documents without conflict
+	private int revisionCacheSize = 0;
+
 	// internal members -----------------------------------------------------------------------
 
 	// the client, encapsulating all Cloudant interaction 
@@ -70,6 +134,36 @@ public class StoreDocument extends AbstractCloudantOperator
     // indicate if we have an output port
     private boolean doOutput = false;
     
+    // the documents and output tuples of the current batch, in input order
+    private List<StoreRequest> batchRequests = new ArrayList<StoreRequest>();
+    private List<OutputTuple> batchTuples = new ArrayList<OutputTuple>();
+    private long batchBytes = 0;
+    
+    // if coalescing is enabled: the index in batchRequests of each document id, 
+    // the index in batchRequests of the document written for each output tuple,
+    // and the index in batchTuples of the latest tuple for each document
+    private Map<String, Integer> batchIndexById = new HashMap<String, Integer>();
+    private List<Integer> batchSlots = new ArrayList<Integer>();
+    private List<Integer> batchLatestTuples = new ArrayList<Integer>();
+    private Metric nCoalescedDocumentsMetric = null;
+    
+    // the number of the current batch and the timer to flush it after bulkMaxLatency
+    private long batchNumber = 0;
+    private ScheduledFuture<?> batchTimer = null;
+    
+    // guards the batch members, flushes can be triggered from the timer thread
+    private final Object batchLock = new Object();
+    
+    // the store requests running asynchronously, null if requests are sent synchronously
+    private InFlightWindow<List<StoreResult>, List<OutputTuple>> inFlightWindow = null;
+    
+    // the lanes running the store requests if workerLanes is set, null otherwise
+    private WorkerLanes lanes = null;
+    
+    // adapts the batch limits to the request latency, null if the fixed limits are used
+    private AdaptiveBatchController batchController = null;
+    private Metric currentBatchSizeMetric = null;
+    
     // methods --------------------------------------------------------------------------------
     
     /**
@@ -89,6 +183,9 @@ public class StoreDocument extends AbstractCloudantOperator
         
         // create the client and check the configuration
         Configuration config = getConfiguration();
+        config.setRevisionCacheSize(revisionCacheSize);
+        config.setCompressRequests(compressRequests);
+        ensureConnections(config, isLaneMode() ? Math.max(maxInFlightRequests, workerLanes) : maxInFlightRequests);
         client = new ClientImpl(config);
         client.setLogger(logger);
         if (!client.validateConfiguration()) {
@@ -101,6 +198,46 @@ public class StoreDocument extends AbstractCloudantOperator
         	logger.fatal("Cannot connect to database, configuration: " + config.toString());
         	throw new RuntimeException("Connection error");
         }
+        startTransferMetrics(client);
+
+        // adapt the batch size to the observed latency, starting with the configured limits
+        if (isBulkMode() && null != bulkTargetLatency) {
+        	batchController = new AdaptiveBatchController(bulkSize, bulkMaxBytes, (long) (bulkMaxLatency * 1000), (long) (bulkTargetLatency * 1000));
+        	currentBatchSizeMetric = context.getMetrics().createCustomMetric("currentBatchSize", "The current max number of documents written with one _bulk_docs request", Metric.Kind.GAUGE);
+        	currentBatchSizeMetric.setValue(batchController.getBatchSize());
+        }
+
+        if (isCoalescing()) {
+        	nCoalescedDocumentsMetric = context.getMetrics().createCustomMetric("nCoalescedDocuments", "The number of documents that were not written, because a later version with the same id was in the same batch", Metric.Kind.COUNTER);
+        }
+
+        // create a thread for each lane and a gauge for its queue depth
+        if (isLaneMode()) {
+        	final Metric[] queueDepthMetrics = new Metric[workerLanes];
+        	for (int i = 0; i < workerLanes; i++) {
+        		queueDepthMetrics[i] = context.getMetrics().createCustomMetric("queueDepthLane" + i, "The number of store requests queued or running in lane " + i, Metric.Kind.GAUGE);
+        	}
+        	lanes = new WorkerLanes(workerLanes, context.getThreadFactory(), new WorkerLanes.DepthListener() {
+        		@Override
+        		public void depthChanged(int lane, int depth) {
+        			queueDepthMetrics[lane].setValue(depth);
+        		}
+        	});
+        }
+
+        // create the threads for asynchronous requests, the results are submitted in input order 
+        if (maxInFlightRequests > 1 || isLaneMode()) {
+        	int maxInFlight = Math.max(maxInFlightRequests, workerLanes);
+        	inFlightWindow = new InFlightWindow<List<StoreResult>, List<OutputTuple>>(
+        			isLaneMode() ? null : Executors.newFixedThreadPool(maxInFlight, context.getThreadFactory()),
+        			maxInFlight,
+        			new InFlightWindow.ResultHandler<List<StoreResult>, List<OutputTuple>>() {
+        				@Override
+        				public void handleResult(List<StoreResult> results, List<OutputTuple> tuples) throws Exception {
+        					submitResults(results, tuples);
+        				}
+        			});
+        }
 
         // all went well 
         logger.trace("Operator " + context.getName() + " Cloudant client has been initialized" + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId());
@@ -126,50 +263,304 @@ public class StoreDocument extends AbstractCloudantOperator
     @Override
     public void process(StreamingInput<Tuple> stream, Tuple tuple) throws Exception {
 
-    	String errorCode = "";
-
-        // get document data  from input tuple
-        String docData = documentAttribute.getValue(tuple);
-        
-        // get id and rev if set
-        String idValue = null;
-        if (documentIdAttribute != null) {
-        	idValue = documentIdAttribute.getValue(tuple);
-        }
-        String revValue = null;
-        if (documentRevisionAttribute != null) {
-        	revValue = documentRevisionAttribute.getValue(tuple);
-        }
+        // get document, id and rev from input tuple
+        StoreRequest req = createStoreRequest(tuple);
         
 		// Create new output tuple and copy over matching attributes
-    	StreamingOutput<OutputTuple> outStream = null;
         OutputTuple outTuple = null;
         if (doOutput) {
-        	outStream = getOutput(0);
-        	outTuple = outStream.newTuple();
+        	outTuple = getOutput(0).newTuple();
     		outTuple.assign(tuple);
+    		if (null != coalescedAttribute) {
+    			outTuple.setBoolean(coalescedAttribute, false);
+    		}
         }
 
-        // Store document in database
-        StoreResult res = client.storeDocument(docData, idValue, revValue);
-        if (!res.isSuccess()) {
-        	errorCode = res.getErrorMessage();
-        	logger.error("Error during store: " + errorCode);
+        if (isBulkMode()) {
+        	addToBatch(req, outTuple);
         } else {
-        	logger.trace("Successfully stored document");
+        	writeDocuments(Collections.singletonList(req), Collections.singletonList(outTuple), null);
         }
-        
-        // submit result, if output port is configured
-        if (doOutput) {
-        	// set error message
-        	setErrorCode(outTuple,errorCode);
-        
-        	// submit result tuple and punctuation if needed
-        	outStream.submit(outTuple);
-        	if (!isPreservePunctuation()) {
-        		outStream.punctuate(Punctuation.WINDOW_MARKER);
-        	}
+    }
+    
+    /*
+     * get document, id and revision from the input tuple 
+     */
+    private StoreRequest createStoreRequest(Tuple tuple) {
+        String idValue = null;
+        if (documentIdAttribute != null) {
+        	idValue = documentIdAttribute.getValue(tuple);
+        }
+        String revValue = null;
+        if (documentRevisionAttribute != null) {
+        	revValue = documentRevisionAttribute.getValue(tuple);
+        }
+        if (isAttachmentMode()) {
+        	// the attachment is streamed from the blob, without copying the data
+        	final Blob data = attachmentAttribute.getValue(tuple);
+        	String name = (null == attachmentNameAttribute) ? null : attachmentNameAttribute.getValue(tuple);
+        	String contentType = (null == contentTypeAttribute) ? null : contentTypeAttribute.getValue(tuple);
+        	return new StoreRequest(idValue, revValue, name, contentType, data::getInputStream, data.getLength());
         }
+        return new StoreRequest(documentAttribute.getValue(tuple), idValue, revValue);
+    }
+    
+    /*
+     * add the tuple to the current batch and flush the batch if it is full 
+     */
+    private void addToBatch(StoreRequest req, OutputTuple outTuple) throws Exception {
+    	long size = req.getDocumentSize();
+    	
+    	synchronized (batchLock) {
+    		// flush before adding if the document would exceed the byte limit
+    		if (!batchRequests.isEmpty() && batchBytes + size > getBatchMaxBytes()) {
+    			flushBatch();
+    		}
+    		
+    		if (isCoalescing() && coalesce(req, outTuple)) {
+    			return;
+    		}
+    		
+    		batchRequests.add(req);
+    		batchTuples.add(outTuple);
+    		batchBytes += size;
+    		
+    		if (batchRequests.size() >= getBatchSize() || batchBytes >= getBatchMaxBytes()) {
+    			flushBatch();
+    		} else if (batchRequests.size() == 1) {
+    			// first document of a new batch, make sure it does not wait longer than bulkMaxLatency
+    			final long timerBatch = batchNumber;
+    			batchTimer = getOperatorContext().getScheduledExecutorService().schedule(new Runnable() {
+    				@Override
+    				public void run() {
+    					try {
+    						synchronized (batchLock) {
+    							if (timerBatch == batchNumber) {
+    								flushBatch();
+    							}
+    						}
+    					} catch (Exception e) {
+    						logger.error("Error during timed flush of the batch: " + e.getMessage());
+    					}
+    				}
+    			}, getFlushInterval(), TimeUnit.MILLISECONDS);
+    		}
+    	}
+    }
+    
+    /*
+     * replace the pending document with the same id by the new version. The output tuple of the replaced 
+     * document is marked as coalesced, it receives the result of the new version.
+     * Returns false if the batch does not contain the document yet, then it is added by the caller.
+     * Must be called while holding the batchLock
+     */
+    private boolean coalesce(StoreRequest req, OutputTuple outTuple) {
+    	String id = getDocumentId(req);
+    	Integer index = (null == id) ? null : batchIndexById.get(id);
+    	if (null == index) {
+    		// first version of the document, documents without id are never coalesced
+    		if (null != id) {
+    			batchIndexById.put(id, batchRequests.size());
+    		}
+    		batchSlots.add(batchRequests.size());
+    		batchLatestTuples.add(batchTuples.size());
+    		return false;
+    	}
+    	
+    	// the replaced document is dropped, the new version takes its place in the bulk request
+    	StoreRequest replaced = batchRequests.set(index, req);
+    	batchBytes += req.getDocumentSize() - replaced.getDocumentSize();
+    	if (doOutput && null != coalescedAttribute) {
+    		batchTuples.get(batchLatestTuples.get(index)).setBoolean(coalescedAttribute, true);
+    	}
+    	batchLatestTuples.set(index, batchTuples.size());
+    	batchTuples.add(outTuple);
+    	batchSlots.add(index);
+    	nCoalescedDocumentsMetric.increment();
+    	return true;
+    }
+    
+    /*
+     * get the id given by the id attribute or contained in the document, null if no id is present 
+     */
+    private static String getDocumentId(StoreRequest req) {
+    	if (null != req.getId() && !req.getId().equals("")) {
+    		return req.getId();
+    	}
+    	try {
+    		return new JsonString(req.getDocument()).getTopLevelStringProperty("_id");
+    	} catch (RuntimeException e) {
+    		// invalid document, it is not coalesced and the error is reported by the store
+    		return null;
+    	}
+    }
+    
+    /*
+     * write the current batch with a single _bulk_docs request.
+     * Must be called while holding the batchLock
+     */
+    private void flushBatch() throws Exception {
+    	if (null != batchTimer) {
+    		batchTimer.cancel(false);
+    		batchTimer = null;
+    	}
+    	batchNumber++;
+    	if (batchRequests.isEmpty()) {
+    		return;
+    	}
+    	
+    	List<StoreRequest> requests = batchRequests;
+    	List<OutputTuple> tuples = batchTuples;
+    	List<Integer> slots = isCoalescing() ? batchSlots : null;
+    	batchRequests = new ArrayList<StoreRequest>();
+    	batchTuples = new ArrayList<OutputTuple>();
+    	batchBytes = 0;
+    	batchIndexById = new HashMap<String, Integer>();
+    	batchSlots = new ArrayList<Integer>();
+    	batchLatestTuples = new ArrayList<Integer>();
+    	
+    	logger.trace("Flushing batch of " + requests.size() + " documents");
+    	writeDocuments(requests, tuples, slots);
+    }
+    
+    /*
+     * store the documents in the database, either synchronously or asynchronously if maxInFlightRequests is 
+     * greater than 1. The output tuples are submitted in input order in both cases. 
+     * In asynchronous mode this call blocks if the max number of requests is in flight. 
+     * If slots is not null, it contains the index of the request written for each output tuple.
+     */
+    private void writeDocuments(final List<StoreRequest> requests, List<OutputTuple> tuples, final List<Integer> slots) throws Exception {
+    	Callable<List<StoreResult>> request = new Callable<List<StoreResult>>() {
+    		@Override
+    		public List<StoreResult> call() {
+    			if (isBulkMode()) {
+    				long startTime = System.currentTimeMillis();
+    				List<StoreResult> results = client.storeDocuments(requests);
+    				updateBatchController(requests, results, System.currentTimeMillis() - startTime);
+    				if (null != slots) {
+    					// coalesced tuples get the result of the document that replaced them
+    					List<StoreResult> tupleResults = new ArrayList<StoreResult>(slots.size());
+    					for (Integer slot : slots) {
+    						tupleResults.add(results.get(slot));
+    					}
+    					return tupleResults;
+    				}
+    				return results;
+    			}
+    			StoreRequest req = requests.get(0);
+    			if (req.isAttachment()) {
+    				return Collections.singletonList(client.storeAttachment(req));
+    			}
+    			return Collections.singletonList(client.storeDocument(req.getDocument(), req.getId(), req.getRevision()));
+    		}
+    	};
+    	
+    	if (null == inFlightWindow) {
+    		submitResults(request.call(), tuples);
+    	} else if (isLaneMode()) {
+    		// requests for the same document run sequentially in its lane
+    		inFlightWindow.submit(request, tuples, lanes.getExecutor(lanes.getLane(getDocumentId(requests.get(0)))));
+    	} else {
+    		inFlightWindow.submit(request, tuples);
+    	}
+    }
+    
+    /*
+     * set the error codes of the output tuples and submit them 
+     */
+    private void submitResults(List<StoreResult> results, List<OutputTuple> tuples) throws Exception {
+    	StreamingOutput<OutputTuple> outStream = doOutput ? getOutput(0) : null;
+    	for (int i = 0; i < results.size(); i++) {
+    		String errorCode = "";
+    		StoreResult res = results.get(i);
+            if (!res.isSuccess()) {
+            	errorCode = res.getErrorMessage();
+            	logger.error("Error during store: " + errorCode);
+            } else {
+            	logger.trace("Successfully stored document");
+            }
+            
+            // submit result, if output port is configured
+            if (doOutput) {
+            	// set error message
+            	OutputTuple outTuple = tuples.get(i);
+            	setErrorCode(outTuple,errorCode);
+            	setStoreResult(outTuple, res);
+            	
+            	// submit result tuple and punctuation if needed
+            	outStream.submit(outTuple);
+            	if (!isPreservePunctuation()) {
+            		outStream.punctuate(Punctuation.WINDOW_MARKER);
+            	}
+            }
+    	}
+    }
+    
+    /*
+     * set id, revision and HTTP status code of the stored document to the configured output attributes 
+     */
+    private void setStoreResult(OutputTuple outTuple, StoreResult res) {
+    	if (null != storedIdAttribute) {
+    		outTuple.setString(storedIdAttribute, (null == res.getId()) ? "" : res.getId());
+    	}
+    	if (null != storedRevisionAttribute) {
+    		outTuple.setString(storedRevisionAttribute, (null == res.getRevision()) ? "" : res.getRevision());
+    	}
+    	if (null != httpStatusCodeAttribute) {
+    		outTuple.setInt(httpStatusCodeAttribute, res.getHttpStatusCode());
+    	}
+    }
+    
+    /*
+     * let the controller adapt the batch limits to the outcome of a bulk request 
+     */
+    private void updateBatchController(List<StoreRequest> requests, List<StoreResult> results, long latency) {
+    	if (null == batchController) {
+    		return;
+    	}
+    	long bytes = 0;
+    	for (StoreRequest req : requests) {
+    		bytes += req.getDocumentSize();
+    	}
+    	// a rejected request is reported for each document, the other status codes do not matter here
+    	int httpStatusCode = 0;
+    	for (StoreResult res : results) {
+    		if (res.getHttpStatusCode() == 413 || res.getHttpStatusCode() == 429) {
+    			httpStatusCode = res.getHttpStatusCode();
+    			break;
+    		}
+    	}
+    	batchController.update(requests.size(), bytes, latency, httpStatusCode);
+    	currentBatchSizeMetric.setValue(batchController.getBatchSize());
+    	logger.trace("Bulk request of " + requests.size() + " documents took " + latency + " ms, batch size: " + batchController.getBatchSize());
+    }
+    
+    private int getBatchSize() {
+    	return (null == batchController) ? bulkSize : batchController.getBatchSize();
+    }
+    
+    private long getBatchMaxBytes() {
+    	return (null == batchController) ? bulkMaxBytes : batchController.getBatchMaxBytes();
+    }
+    
+    private long getFlushInterval() {
+    	return (null == batchController) ? (long) (bulkMaxLatency * 1000) : batchController.getFlushInterval();
+    }
+    
+    private boolean isLaneMode() {
+    	return workerLanes > 0 && !isBulkMode();
+    }
+    
+    private boolean isCoalescing() {
+    	return coalesceById && isBulkMode();
+    }
+    
+    private boolean isBulkMode() {
+    	return bulkSize > 1 && !isAttachmentMode();
+    }
+    
+    private boolean isAttachmentMode() {
+    	return null != attachmentAttribute;
     }
     
     /**
@@ -180,6 +571,15 @@ public class StoreDocument extends AbstractCloudantOperator
      */
     @Override
     public void processPunctuation(StreamingInput<Tuple> stream, Punctuation mark) throws Exception {
+    	// write pending documents, so that the punctuation follows their output tuples
+    	if (isBulkMode()) {
+    		synchronized (batchLock) {
+    			flushBatch();
+    		}
+    	}
+    	if (null != inFlightWindow && (mark == Punctuation.FINAL_MARKER || isPreservePunctuation())) {
+    		inFlightWindow.drain();
+    	}
     	if (mark == Punctuation.WINDOW_MARKER) {
     		if (doOutput && isPreservePunctuation()) {
     			super.processPunctuation(stream, mark);
@@ -198,6 +598,27 @@ public class StoreDocument extends AbstractCloudantOperator
     public synchronized void shutdown() throws Exception {
         OperatorContext context = getOperatorContext();
         Logger.getLogger(this.getClass()).trace("Operator " + context.getName() + " shutting down in PE: " + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId() );
+        // write documents that are still pending
+        if (isBulkMode() && null != client) {
+        	synchronized (batchLock) {
+        		try {
+        			flushBatch();
+        		} catch (Exception e) {
+        			logger.error("Error during flush of the batch on shutdown: " + e.getMessage());
+        		}
+        	}
+        }
+        // wait for the requests in flight
+        if (null != inFlightWindow) {
+        	try {
+        		inFlightWindow.shutdown();
+        	} catch (Exception e) {
+        		logger.error("Error during completion of pending requests on shutdown: " + e.getMessage());
+        	}
+        }
+        if (null != lanes) {
+        	lanes.shutdown();
+        }
         // shutdown cloudant client
         if (null != client) {
         	client.disconnect();
@@ -238,11 +659,191 @@ public class StoreDocument extends AbstractCloudantOperator
 		this.documentRevisionAttribute = documentRevisionAttribute;
 	}
 	
+	@Parameter(
+		name=ATTACHMENT_ATTR_PARAM, optional=true,
+		description="This parameter specifies an attribute of the input tuple that contains the data of an attachment to store. "
+		+ "The attribute must be of type 'blob'. If this parameter is set, the operator stores a standalone attachment for each tuple instead of a document, "
+		+ "and the document attribute is not used. The data is streamed to the database as it is, without base64 encoding. "
+		+ "The document is given by 'documentIdAttribute', which is required in this case. If 'documentRevisionAttribute' is not set or empty, "
+		+ "the latest revision of the document is used, and the document is created if it does not exist. "
+		+ "The name of the attachment is given by 'attachmentNameAttribute', the content type by 'contentTypeAttribute'. Attachments are not written in bulk mode."
+	)
+	public void setAttachmentAttribute(TupleAttribute<Tuple,Blob> attachmentAttribute) {
+		this.attachmentAttribute = attachmentAttribute;
+	}
+
+	@Parameter(
+		name="attachmentNameAttribute", optional=true,
+		description="This parameter specifies an attribute of the input tuple that contains the name of the attachment to store. "
+		+ "The attribute must be of type 'rstring'. It is required if 'attachmentAttribute' is set."
+	)
+	public void setAttachmentNameAttribute(TupleAttribute<Tuple,String> attachmentNameAttribute) {
+		this.attachmentNameAttribute = attachmentNameAttribute;
+	}
+
+	@Parameter(
+		name="contentTypeAttribute", optional=true,
+		description="This parameter specifies an attribute of the input tuple that contains the content type of the attachment to store, e.g. 'image/png'. "
+		+ "The attribute must be of type 'rstring'. If it is not set or empty, the content type 'application/octet-stream' is used."
+	)
+	public void setContentTypeAttribute(TupleAttribute<Tuple,String> contentTypeAttribute) {
+		this.contentTypeAttribute = contentTypeAttribute;
+	}
+
+	@Parameter(
+		name=STORED_ID_ATTR_PARAM, optional=true,
+		description="This parameter specifies the name of an output attribute that receives the id of the stored document. "
+		+ "The attribute must be of type 'rstring'. This is the id assigned by Cloudant if the document did not have an id. The value is empty if the id is not known, e.g. after an error."
+	)
+	public void setStoredIdAttribute(String storedIdAttribute) {
+		this.storedIdAttribute = storedIdAttribute;
+	}
+
+	@Parameter(
+		name=STORED_REV_ATTR_PARAM, optional=true,
+		description="This parameter specifies the name of an output attribute that receives the new revision of the stored document. "
+		+ "The attribute must be of type 'rstring'. The value can be used for the next update of the document without reading it again. It is empty if the store operation failed."
+	)
+	public void setStoredRevisionAttribute(String storedRevisionAttribute) {
+		this.storedRevisionAttribute = storedRevisionAttribute;
+	}
+
+	@Parameter(
+		name=HTTP_STATUS_ATTR_PARAM, optional=true,
+		description="This parameter specifies the name of an output attribute that receives the HTTP status code of the store operation, e.g. 201 or 409. "
+		+ "The attribute must be of type 'int32'. In bulk mode the status code of a failed document is derived from its error, e.g. 409 for a conflict. "
+		+ "The value is 0 if no response was received from the database."
+	)
+	public void setHttpStatusCodeAttribute(String httpStatusCodeAttribute) {
+		this.httpStatusCodeAttribute = httpStatusCodeAttribute;
+	}
+	
+	@Parameter(
+		name="bulkSize", optional=true,
+		description="This parameter specifies the maximum number of documents that are written to the database with one _bulk_docs request. "
+		+ "If the value is greater than 1, the operator collects documents and writes them in batches. A batch is written when it contains 'bulkSize' documents, "
+		+ "when it exceeds 'bulkMaxBytes', when its oldest document waited 'bulkMaxLatency' seconds, or when a punctuation is received. "
+		+ "The output tuples are submitted in input order after the batch is written. The default value is 1, which writes each document with a separate request."
+	)
+	public void setBulkSize(int bulkSize) {
+		this.bulkSize = bulkSize;
+	}
+
+	@Parameter(
+		name="bulkMaxBytes", optional=true,
+		description="This parameter specifies the maximum size in bytes of the documents written with one _bulk_docs request, counted in their UTF-8 encoding. "
+		+ "It is used only if 'bulkSize' is greater than 1. The default value is 1048576."
+	)
+	public void setBulkMaxBytes(int bulkMaxBytes) {
+		this.bulkMaxBytes = bulkMaxBytes;
+	}
+
+	@Parameter(
+		name="bulkMaxLatency", optional=true,
+		description="This parameter specifies the maximum time in seconds a document waits in a batch before the batch is written to the database. "
+		+ "It is used only if 'bulkSize' is greater than 1. The default value is 1.0."
+	)
+	public void setBulkMaxLatency(double bulkMaxLatency) {
+		this.bulkMaxLatency = bulkMaxLatency;
+	}
+	
+	@Parameter(
+		name="bulkTargetLatency", optional=true,
+		description="This parameter specifies the target latency in seconds of a _bulk_docs request and enables adaptive batch sizing. "
+		+ "It is used only if 'bulkSize' is greater than 1. The batch size starts at 'bulkSize', grows while requests complete in less than half of the target latency, "
+		+ "and is halved if a request exceeds the target latency or the database responds with status 429 (too many requests) or 413 (request too large). "
+		+ "After a 413 response the byte limit is also lowered below the size of the rejected request. The time a document waits in a batch is reduced in proportion to the batch size. "
+		+ "The values of 'bulkSize', 'bulkMaxBytes' and 'bulkMaxLatency' are the upper limits. The current batch size is available as metric 'currentBatchSize'. "
+		+ "If this parameter is not set, the batch limits are fixed."
+	)
+	public void setBulkTargetLatency(double bulkTargetLatency) {
+		this.bulkTargetLatency = bulkTargetLatency;
+	}
+	
+	@Parameter(
+		name="coalesceById", optional=true,
+		description="If set to true, only the latest version of documents with the same id is written within a batch. "
+		+ "It is used only if 'bulkSize' is greater than 1, the batch limits 'bulkSize', 'bulkMaxBytes' and 'bulkMaxLatency' define the window in which documents are coalesced. "
+		+ "The output tuple of a replaced document is still submitted in input order, it receives the result of the version that was written. See parameter 'coalescedAttribute'. "
+		+ "The number of replaced documents is available as metric 'nCoalescedDocuments'. Documents without id are never coalesced. The default value is false."
+	)
+	public void setCoalesceById(boolean coalesceById) {
+		this.coalesceById = coalesceById;
+	}
+
+	@Parameter(
+		name=COALESCED_ATTR_PARAM, optional=true,
+		description="This parameter specifies the name of an output attribute that is set to true if the document was not written, "
+		+ "because a later version with the same id replaced it. The attribute must be of type 'boolean'. See parameter 'coalesceById'."
+	)
+	public void setCoalescedAttribute(String coalescedAttribute) {
+		this.coalescedAttribute = coalescedAttribute;
+	}
+	
+	@Parameter(
+		name="maxInFlightRequests", optional=true,
+		description="This parameter specifies the maximum number of store requests that are sent to the database concurrently. "
+		+ "If the value is greater than 1, the requests are sent asynchronously and the processing of input tuples blocks only if this number of requests is in flight. "
+		+ "The output tuples are submitted in input order. Pending requests are completed on final punctuation and on shutdown. "
+		+ "The connection pool of the operator is enlarged to this number of connections if 'maxConnections' is smaller. The default value is 1, which sends the requests synchronously."
+	)
+	public void setMaxInFlightRequests(int maxInFlightRequests) {
+		this.maxInFlightRequests = maxInFlightRequests;
+	}
+	
+	@Parameter(
+		name="workerLanes", optional=true,
+		description="This parameter specifies the number of lanes that write documents concurrently. "
+		+ "Each document is assigned to a lane by the hash of its id, and each lane writes its documents sequentially. "
+		+ "So updates of the same document keep their order, while different documents are written in parallel. Documents without id are distributed over all lanes. "
+		+ "The output tuples are submitted in input order. The number of documents queued in each lane is available as metric 'queueDepthLane<n>'. "
+		+ "The number of documents in flight is limited by 'maxInFlightRequests', but is at least the number of lanes. "
+		+ "The connection pool of the operator is enlarged to one connection per lane if 'maxConnections' is smaller. "
+		+ "This parameter is ignored in bulk mode, see 'bulkSize'. The default value is 0, which disables the lanes."
+	)
+	public void setWorkerLanes(int workerLanes) {
+		this.workerLanes = workerLanes;
+	}
+	
+	@Parameter(
+		name="compressRequests", optional=true,
+		description="If set to true, the documents are sent gzip compressed to the database. Small requests below 1024 bytes are not compressed. "
+		+ "Compression reduces the network traffic for large documents and bulk requests at the cost of CPU time. "
+		+ "The metrics 'nBytesSent' and 'nWireBytesSent' show the effect. The default value is false."
+	)
+	public void setCompressRequests(boolean compressRequests) {
+		this.compressRequests = compressRequests;
+	}
+	
+	@Parameter(
+		name="revisionCacheSize", optional=true,
+		description="This parameter specifies the maximum number of document revisions the operator remembers from previous store operations. "
+		+ "If a document with an id but without revision is stored, and the latest revision of the document is known, the document is updated directly. "
+		+ "Otherwise the operator needs to try to create the document, read the latest revision after the conflict, and update the document. "
+		+ "If the remembered revision is outdated, the operator falls back to this procedure. The least recently used revisions are removed if the limit is reached. "
+		+ "The default value is 0, which disables remembering revisions."
+	)
+	public void setRevisionCacheSize(int revisionCacheSize) {
+		this.revisionCacheSize = revisionCacheSize;
+	}
+	
 	@ContextCheck(compile = true)
     public static void compiletimeChecker(OperatorContextChecker checker) {
-		StreamsHelper.validateInputAttribute(checker, DOC_ATTR_PARAM, DOC_ATTR_DEFAULT, MetaType.RSTRING);
+		// the document is not used if attachments are stored
+		if (!checker.getOperatorContext().getParameterNames().contains(ATTACHMENT_ATTR_PARAM)) {
+			StreamsHelper.validateInputAttribute(checker, DOC_ATTR_PARAM, DOC_ATTR_DEFAULT, MetaType.RSTRING);
+		}
+		checker.checkDependentParameters(ATTACHMENT_ATTR_PARAM, DOCID_ATTR_PARAM, "attachmentNameAttribute");
 	}	
 	
+	@ContextCheck(compile = false, runtime = true)
+    public static void storeResultChecker(OperatorContextChecker checker) {
+		StreamsHelper.validateOutputAttributeRuntime(checker, STORED_ID_ATTR_PARAM, null, MetaType.RSTRING);
+		StreamsHelper.validateOutputAttributeRuntime(checker, STORED_REV_ATTR_PARAM, null, MetaType.RSTRING);
+		StreamsHelper.validateOutputAttributeRuntime(checker, HTTP_STATUS_ATTR_PARAM, null, MetaType.INT32);
+		StreamsHelper.validateOutputAttributeRuntime(checker, COALESCED_ATTR_PARAM, null, MetaType.BOOLEAN);
+	}
+	
 	// documentation ------------------------------------------------------------------------------------------
 	
 	// TODO improve
@@ -250,7 +851,9 @@ public class StoreDocument extends AbstractCloudantOperator
 		"This operator stores JSON strings in the configured Cloudant database."
 		+ "The JSON string must be provided as rstring attribute in the input tuple. The attribute name is configrable."
 		+ "Optionally the id and revision can be specified via input attributes. If present, any id and revision information in the document is overwritten."
-		+ "If the docuement is already present in the database, it is overwritten. Otherwise it is created.";
+		+ "If the docuement is already present in the database, it is overwritten. Otherwise it is created."
+		+ "Optionally documents are collected and written in batches using the _bulk_docs API, see parameter 'bulkSize'."
+		+ "Alternatively the operator stores binary attachments of documents from blob attributes, see parameter 'attachmentAttribute'.";
 
 	// TODO improve
 	public static final String iport0Description =
@@ -259,6 +862,7 @@ public class StoreDocument extends AbstractCloudantOperator
 	// TODO improve
 	public static final String oport0Description =
 		"This optional output port can contain an attribute that receives an error code for the store operation."
+		+ "Optionally it can contain attributes for the id, the new revision and the HTTP status code of the stored document."
 		+ "Matching attributes are copied from the input port to this output port.";
 
 }
@@ -0,0 +1,94 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Limits the requests sent to a Cloudant account, with a separate limit for each request class
+ * like the provisioned throughput of the Cloudant plans. The limiters are shared by all clients 
+ * in the JVM that connect to the same account with the same user, so operators in the same PE 
+ * stay below the limit together.
+ */
+public class AccountRateLimiter {
+
+	/**
+	 * The request classes of the Cloudant throughput limits
+	 */
+	public enum RequestClass {
+		/** read a single document */
+		READ,
+		/** create, update or delete a document */
+		WRITE,
+		/** queries, views and _all_docs */
+		QUERY
+	}
+
+	private static final Logger logger = Logger.getLogger(AccountRateLimiter.class.getName());
+
+	// the limiters of the accounts, the key is URL and user
+	private static final ConcurrentHashMap<String, AccountRateLimiter> limiters = new ConcurrentHashMap<String, AccountRateLimiter>();
+
+	// the limiters of the request classes, null if the class is not limited
+	private final RateLimiter[] classLimiters = new RateLimiter[RequestClass.values().length];
+
+	private AccountRateLimiter(double readRate, double writeRate, double queryRate) {
+		super();
+		classLimiters[RequestClass.READ.ordinal()] = createLimiter(readRate);
+		classLimiters[RequestClass.WRITE.ordinal()] = createLimiter(writeRate);
+		classLimiters[RequestClass.QUERY.ordinal()] = createLimiter(queryRate);
+	}
+
+	private static RateLimiter createLimiter(double rate) {
+		return (rate > 0) ? new RateLimiter(rate) : null;
+	}
+
+	/**
+	 * get the limiter shared by all clients of the account. It is created with the limits of the first 
+	 * configuration, different limits in later configurations are ignored.
+	 * @param cfg the client configuration
+	 * @return the limiter, or null if no limit is configured
+	 */
+	public static AccountRateLimiter getShared(Configuration cfg) {
+		if (cfg.getReadRateLimit() <= 0 && cfg.getWriteRateLimit() <= 0 && cfg.getQueryRateLimit() <= 0) {
+			return null;
+		}
+		String key = cfg.getUrl() + "|" + cfg.getUserName();
+		AccountRateLimiter limiter = limiters.computeIfAbsent(key, 
+				k -> new AccountRateLimiter(cfg.getReadRateLimit(), cfg.getWriteRateLimit(), cfg.getQueryRateLimit()));
+		if (!limiter.hasLimits(cfg.getReadRateLimit(), cfg.getWriteRateLimit(), cfg.getQueryRateLimit())) {
+			logger.warn("Rate limits of the configuration differ from the limits already used for the account, the configuration is ignored: " + cfg.getUrl());
+		}
+		return limiter;
+	}
+
+	/**
+	 * wait until the request can be sent without exceeding the limit of its class
+	 * @param requestClass the class of the request
+	 * @param permits the number of requests of the class, e.g. the number of documents in a bulk request
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void acquire(RequestClass requestClass, int permits) throws InterruptedException {
+		RateLimiter limiter = classLimiters[requestClass.ordinal()];
+		if (null != limiter) {
+			limiter.acquire(permits);
+		}
+	}
+
+	private boolean hasLimits(double readRate, double writeRate, double queryRate) {
+		return hasLimit(RequestClass.READ, readRate) && hasLimit(RequestClass.WRITE, writeRate) && hasLimit(RequestClass.QUERY, queryRate);
+	}
+
+	private boolean hasLimit(RequestClass requestClass, double rate) {
+		RateLimiter limiter = classLimiters[requestClass.ordinal()];
+		return (null == limiter) ? rate <= 0 : limiter.getRate() == rate;
+	}
+
+}
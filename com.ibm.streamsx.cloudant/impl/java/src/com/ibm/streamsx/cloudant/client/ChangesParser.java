@@ -0,0 +1,425 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.google.gson.Gson;
+
+/**
+ * Parses the rows of a changes feed directly on the bytes of the response stream.
+ * In a continuous feed, each row is one line holding a JSON object, empty lines are heartbeats.
+ * A normal feed is one JSON object with the rows in the results array, it is read completely as one page.
+ * A page of the _all_docs API, with the rows in the rows array and the revision in the value of each row, is read the same way.
+ * The parser reads the rows into a reused buffer and slices the id, the sequence value, the deleted flag,
+ * the first revision and the document out of the row, without building an object tree. Only these values
+ * are copied into strings, the document is decoded from its bytes as it appears in the feed.
+ * The parser is not thread safe.
+ */
+public class ChangesParser {
+
+	// the initial size of the line buffer, it grows for longer lines
+	private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+	// used to decode strings with escape sequences, which are rare in ids and sequence values
+	private static final Gson gson = new Gson();
+
+	private static final byte[] ID = bytes("id");
+	private static final byte[] SEQ = bytes("seq");
+	private static final byte[] DELETED = bytes("deleted");
+	private static final byte[] CHANGES = bytes("changes");
+	private static final byte[] DOC = bytes("doc");
+	private static final byte[] REV = bytes("rev");
+	private static final byte[] RESULTS = bytes("results");
+	private static final byte[] ROWS = bytes("rows");
+	private static final byte[] VALUE = bytes("value");
+	private static final byte[] LAST_SEQ = bytes("last_seq");
+	private static final byte[] PENDING = bytes("pending");
+
+	private final InputStream in;
+
+	// the bytes read from the stream, valid from pos to limit
+	private byte[] buf = new byte[INITIAL_BUFFER_SIZE];
+	private int pos = 0;
+	private int limit = 0;
+
+	// true if a normal feed is parsed, then limit is the end of the results array
+	private boolean page = false;
+
+	// the last_seq and pending values of a normal feed
+	private String lastSeq = null;
+	private long pending = -1;
+
+	/**
+	 * create the parser for a continuous feed
+	 * @param in the decoded response stream of the changes feed
+	 */
+	public ChangesParser(InputStream in) {
+		super();
+		this.in = in;
+	}
+
+	/**
+	 * create the parser for a normal feed or an _all_docs response, the response is read completely
+	 * @param in the decoded response stream of the changes feed, it is closed after reading
+	 * @return the parser, positioned at the first row of the results
+	 * @throws IOException if the stream cannot be read
+	 * @throws IllegalArgumentException if the response is not a valid changes object
+	 */
+	public static ChangesParser forPage(InputStream in) throws IOException {
+		ChangesParser parser = new ChangesParser(in);
+		try {
+			parser.readPage();
+		} finally {
+			in.close();
+		}
+		return parser;
+	}
+
+	/**
+	 * close the stream, errors are ignored
+	 */
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			// the feed is not used anymore
+		}
+	}
+
+	/**
+	 * @return the last_seq value of a normal feed, the sequence value to continue with
+	 */
+	public String getLastSeq() {
+		return lastSeq;
+	}
+
+	/**
+	 * @return the number of changes after this page of a normal feed, -1 if unknown
+	 */
+	public long getPending() {
+		return pending;
+	}
+
+	/*
+	 * read the complete response and locate the results array and the trailing values
+	 */
+	private void readPage() throws IOException {
+		while (true) {
+			if (limit == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			int n = in.read(buf, limit, buf.length - limit);
+			if (n < 0) {
+				break;
+			}
+			limit += n;
+		}
+		page = true;
+		int end = limit;
+		int resultsStart = 0;
+		int resultsEnd = 0;
+		int p = expect(buf, skipWhitespace(buf, 0, end), end, '{');
+		p = skipWhitespace(buf, p, end);
+		while (p < end && buf[p] == '"') {
+			int nameEnd = skipString(buf, p, end);
+			int valueStart = skipWhitespace(buf, expect(buf, skipWhitespace(buf, nameEnd, end), end, ':'), end);
+			int valueEnd = skipValue(buf, valueStart, end);
+			if ((isName(buf, p, nameEnd, RESULTS) || isName(buf, p, nameEnd, ROWS)) && buf[valueStart] == '[') {
+				resultsStart = valueStart + 1;
+				resultsEnd = valueEnd - 1;
+			} else if (isName(buf, p, nameEnd, LAST_SEQ)) {
+				lastSeq = stringValue(buf, valueStart, valueEnd);
+			} else if (isName(buf, p, nameEnd, PENDING)) {
+				pending = Long.parseLong(new String(buf, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8));
+			}
+			p = skipWhitespace(buf, valueEnd, end);
+			if (p < end && buf[p] == ',') {
+				p = skipWhitespace(buf, p + 1, end);
+			}
+		}
+		pos = resultsStart;
+		limit = resultsEnd;
+	}
+
+	/**
+	 * read the next row into the result, the result is cleared before.
+	 * The status of the result is OK for a change and HEARTBEAT for an empty line or a row without id,
+	 * like the last_seq row at the end of the feed
+	 * @param result the result to fill
+	 * @param getDocument true to set the document of the change
+	 * @return false if the end of the stream is reached
+	 * @throws IOException if the stream cannot be read
+	 * @throws IllegalArgumentException if the row is not a valid JSON object
+	 */
+	public boolean next(ReaderResult result, boolean getDocument) throws IOException {
+		result.clear();
+		if (page) {
+			return nextInPage(result, getDocument);
+		}
+		int end = nextLine();
+		if (end < 0) {
+			return false;
+		}
+		int start = pos;
+		pos = end + 1;
+
+		// ignore line end and separator
+		while (end > start && (buf[end - 1] == '\r' || buf[end - 1] == ',' || isWhitespace(buf[end - 1]))) {
+			end--;
+		}
+		start = skipWhitespace(buf, start, end);
+		if (start == end) {
+			result.setStatus(ReaderResult.Status.HEARTBEAT);
+			return true;
+		}
+
+		parseRow(start, end, result, getDocument);
+		result.setStatus((null == result.getId()) ? ReaderResult.Status.HEARTBEAT : ReaderResult.Status.OK);
+		return true;
+	}
+
+	/*
+	 * parse the next element of the results array of a normal feed
+	 * if sequence values are only sent for some rows (seq_interval), the last row gets last_seq
+	 */
+	private boolean nextInPage(ReaderResult result, boolean getDocument) {
+		pos = skipWhitespace(buf, pos, limit);
+		if (pos >= limit) {
+			return false;
+		}
+		int end = skipValue(buf, pos, limit);
+		parseRow(pos, end, result, getDocument);
+		pos = skipWhitespace(buf, end, limit);
+		if (pos < limit && buf[pos] == ',') {
+			pos++;
+		}
+		if (null == result.getSeq() && skipWhitespace(buf, pos, limit) >= limit) {
+			result.setSeq(lastSeq);
+		}
+		result.setStatus((null == result.getId()) ? ReaderResult.Status.HEARTBEAT : ReaderResult.Status.OK);
+		return true;
+	}
+
+	/*
+	 * find the end of the next line, reading from the stream as needed
+	 * returns the index of the line feed, or -1 at the end of the stream
+	 */
+	private int nextLine() throws IOException {
+		int scan = pos;
+		while (true) {
+			for (; scan < limit; scan++) {
+				if (buf[scan] == '\n') {
+					return scan;
+				}
+			}
+			// move the partial line to the start of the buffer, grow the buffer if the line fills it
+			if (pos > 0) {
+				System.arraycopy(buf, pos, buf, 0, limit - pos);
+				scan -= pos;
+				limit -= pos;
+				pos = 0;
+			}
+			if (limit == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			int n = in.read(buf, limit, buf.length - limit);
+			if (n < 0) {
+				// a last line without line feed is still a row
+				if (limit > pos) {
+					if (limit == buf.length) {
+						buf = Arrays.copyOf(buf, buf.length + 1);
+					}
+					buf[limit] = '\n';
+					return limit++;
+				}
+				return -1;
+			}
+			limit += n;
+		}
+	}
+
+	/*
+	 * scan the members of the row object
+	 */
+	private void parseRow(int start, int end, ReaderResult result, boolean getDocument) {
+		int p = expect(buf, start, end, '{');
+		p = skipWhitespace(buf, p, end);
+		if (p < end && buf[p] == '}') {
+			return;
+		}
+		while (true) {
+			int nameStart = p;
+			int nameEnd = skipString(buf, p, end);
+			p = expect(buf, skipWhitespace(buf, nameEnd, end), end, ':');
+			int valueStart = skipWhitespace(buf, p, end);
+			int valueEnd = skipValue(buf, valueStart, end);
+
+			if (isName(buf, nameStart, nameEnd, ID)) {
+				result.setId(stringValue(buf, valueStart, valueEnd));
+			} else if (isName(buf, nameStart, nameEnd, SEQ)) {
+				result.setSeq(stringValue(buf, valueStart, valueEnd));
+			} else if (isName(buf, nameStart, nameEnd, DELETED)) {
+				result.setDeleted(valueEnd - valueStart == 4 && buf[valueStart] == 't');
+			} else if (isName(buf, nameStart, nameEnd, CHANGES)) {
+				result.setRev(firstRevision(buf, valueStart, valueEnd));
+			} else if (isName(buf, nameStart, nameEnd, VALUE) && buf[valueStart] == '{') {
+				result.setRev(memberString(buf, valueStart, valueEnd, REV));
+			} else if (getDocument && isName(buf, nameStart, nameEnd, DOC) && buf[valueStart] == '{') {
+				result.setDoc(new String(buf, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8));
+			}
+
+			p = skipWhitespace(buf, valueEnd, end);
+			if (p < end && buf[p] == ',') {
+				p = skipWhitespace(buf, p + 1, end);
+			} else {
+				expect(buf, p, end, '}');
+				return;
+			}
+		}
+	}
+
+	/*
+	 * get the rev member of the first object in the changes array, null if there is none
+	 */
+	private static String firstRevision(byte[] b, int start, int end) {
+		if (b[start] != '[') {
+			return null;
+		}
+		int p = skipWhitespace(b, start + 1, end);
+		if (p >= end || b[p] != '{') {
+			return null;
+		}
+		return memberString(b, p, skipValue(b, p, end), REV);
+	}
+
+	/*
+	 * get a member of the object from start to end as string, null if there is none
+	 */
+	private static String memberString(byte[] b, int start, int end, byte[] name) {
+		int p = skipWhitespace(b, start + 1, end);
+		while (p < end && b[p] == '"') {
+			int nameEnd = skipString(b, p, end);
+			int valueStart = skipWhitespace(b, expect(b, skipWhitespace(b, nameEnd, end), end, ':'), end);
+			int valueEnd = skipValue(b, valueStart, end);
+			if (isName(b, p, nameEnd, name)) {
+				return stringValue(b, valueStart, valueEnd);
+			}
+			p = skipWhitespace(b, valueEnd, end);
+			if (p < end && b[p] == ',') {
+				p = skipWhitespace(b, p + 1, end);
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * get a value as string, strings are unquoted, other values are returned as they appear, null for null
+	 */
+	private static String stringValue(byte[] b, int start, int end) {
+		if (b[start] != '"') {
+			String value = new String(b, start, end - start, StandardCharsets.UTF_8);
+			return value.equals("null") ? null : value;
+		}
+		for (int i = start + 1; i < end - 1; i++) {
+			if (b[i] == '\\') {
+				return gson.fromJson(new String(b, start, end - start, StandardCharsets.UTF_8), String.class);
+			}
+		}
+		return new String(b, start + 1, end - start - 2, StandardCharsets.UTF_8);
+	}
+
+	// compare a quoted member name, the names of interest contain no escape sequences
+	private static boolean isName(byte[] b, int start, int end, byte[] name) {
+		if (end - start != name.length + 2) {
+			return false;
+		}
+		for (int i = 0; i < name.length; i++) {
+			if (b[start + 1 + i] != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * find the end of the value starting at start, nested values are skipped by tracking strings and brackets
+	 */
+	private static int skipValue(byte[] b, int start, int end) {
+		if (start >= end) {
+			throw new IllegalArgumentException("missing value in changes row");
+		}
+		if (b[start] == '"') {
+			return skipString(b, start, end);
+		}
+		if (b[start] == '{' || b[start] == '[') {
+			int depth = 0;
+			for (int p = start; p < end; p++) {
+				byte c = b[p];
+				if (c == '"') {
+					p = skipString(b, p, end) - 1;
+				} else if (c == '{' || c == '[') {
+					depth++;
+				} else if (c == '}' || c == ']') {
+					if (--depth == 0) {
+						return p + 1;
+					}
+				}
+			}
+			throw new IllegalArgumentException("unterminated value in changes row");
+		}
+		int p = start;
+		while (p < end && b[p] != ',' && b[p] != '}' && b[p] != ']' && !isWhitespace(b[p])) {
+			p++;
+		}
+		return p;
+	}
+
+	/*
+	 * find the end of the string starting at start, the index after the closing quote
+	 */
+	private static int skipString(byte[] b, int start, int end) {
+		if (start >= end || b[start] != '"') {
+			throw new IllegalArgumentException("string expected in changes row");
+		}
+		for (int p = start + 1; p < end; p++) {
+			if (b[p] == '\\') {
+				p++;
+			} else if (b[p] == '"') {
+				return p + 1;
+			}
+		}
+		throw new IllegalArgumentException("unterminated string in changes row");
+	}
+
+	private static int expect(byte[] b, int p, int end, char c) {
+		if (p >= end || b[p] != c) {
+			throw new IllegalArgumentException("'" + c + "' expected in changes row");
+		}
+		return p + 1;
+	}
+
+	private static int skipWhitespace(byte[] b, int p, int end) {
+		while (p < end && isWhitespace(b[p])) {
+			p++;
+		}
+		return p;
+	}
+
+	private static boolean isWhitespace(byte c) {
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
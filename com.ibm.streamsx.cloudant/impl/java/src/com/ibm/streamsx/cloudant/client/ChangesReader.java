@@ -13,4 +13,14 @@ public interface ChangesReader {
 	
 	void stopReading();
 	
+	/**
+	 * @return the number of times the reader reconnected to the changes feed
+	 */
+	long getReconnects();
+	
+	/**
+	 * @return the number of changes received again because of reconnects
+	 */
+	long getReplayedChanges();
+	
 }
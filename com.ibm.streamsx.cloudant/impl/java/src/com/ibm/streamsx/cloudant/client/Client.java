@@ -7,6 +7,8 @@
 
 package com.ibm.streamsx.cloudant.client;
 
+import java.util.List;
+
 import org.apache.log4j.Logger;
 
 import com.cloudant.client.api.Database;
@@ -56,6 +58,23 @@ public interface Client {
 	FetchResult fetchDocument(String id, String revision);
 	FetchResult fetchDocument(String id);
 	
+	/**
+	 * Get a list of documents from Cloudant with a single _bulk_get request.
+	 * The result indicates any errors per document, a document that does not exist has the status NOTFOUND.
+	 * The method must not throw exceptions.
+	 * @param documents the ids and optional revisions of the documents
+	 * @return one result for each document in the same order as the input list
+	 */
+	List<FetchResult> fetchDocuments(List<FetchRequest> documents);
+	
+	/**
+	 * Read the latest revision of a document from Cloudant without transferring the document itself. 
+	 * The result indicates any errors. The method must not throw exceptions.
+	 * @param id the id of the document
+	 * @return The outcome of the operation. Contains error codes and the revision as result string
+	 */
+	FetchResult fetchRevision(String id);
+	
 	/**
 	 * Store a document in Cloudant. If a document with the same id is already in the database, the method
 	 * tries to overwrite thhe existing document. The result indicates any errors. The method must not throw exceptions.
@@ -68,6 +87,24 @@ public interface Client {
 	StoreResult storeDocument(String document, String id);
 	StoreResult storeDocument(String document);
 
+	/**
+	 * Store a list of documents in Cloudant using a single _bulk_docs request. Documents that have an id but no revision
+	 * and already exist in the database are overwritten, like in the single document store operation.
+	 * The result indicates any errors per document. The method must not throw exceptions.
+	 * @param documents the documents to store, each with optional id and revision
+	 * @return The outcome of the operation, one result for each document in the same order as the input list
+	 */
+	List<StoreResult> storeDocuments(List<StoreRequest> documents);
+	
+	/**
+	 * Store an attachment of a document in Cloudant. The data is streamed to the database as it is.
+	 * If no revision is given, the latest revision of the document is used, and the document is created if it does not exist.
+	 * The method must not throw exceptions.
+	 * @param request the request holding id, optional revision, name, content type and data of the attachment
+	 * @return The outcome of the operation, including the new revision of the document
+	 */
+	StoreResult storeAttachment(StoreRequest request);
+
 	/**
 	 * Create a continous changes feed reader
 	 * @param useAPI if true, the reader from the standard Java client is used. If false the reader directly based on the REST API is used 
@@ -77,4 +114,55 @@ public interface Client {
 	 */
 	ChangesReader getReader(boolean useAPI, String since, boolean getDocument);
 	
+	/**
+	 * get the byte counters of the requests and responses, including the ones of changes readers created by this client
+	 * @return the statistics
+	 */
+	TransferStatistics getTransferStatistics();
+	
+	/**
+	 * get the cache of fetched documents
+	 * @return the cache, null if the document cache is disabled
+	 */
+	DocumentCache getDocumentCache();
+	
+	/**
+	 * Read the current update sequence value of the database, a changes feed started at this value
+	 * gets all changes made after the call
+	 * @return the sequence value
+	 * @throws Exception if the request fails after all retries
+	 */
+	String getUpdateSeq() throws Exception;
+	
+	/**
+	 * Split the document ids of the database into key ranges with about the same number of documents
+	 * @param ranges the number of ranges
+	 * @return the ids at which the ranges start, without the first range, which starts at the beginning of the database.
+	 * Contains fewer ids if the database has fewer documents than ranges
+	 * @throws Exception if a request fails after all retries
+	 */
+	List<String> getKeyRangeBoundaries(int ranges) throws Exception;
+	
+	/**
+	 * Read a page of documents in id order with the _all_docs API
+	 * @param startKey the first id of the page, null to start at the beginning of the database
+	 * @param skipStartKey true to exclude the start key, to continue after the last id of the previous page
+	 * @param endKey the id before which the range ends, null to read up to the end of the database
+	 * @param limit the max number of documents in the page
+	 * @param getDocument true to include the documents
+	 * @return the parser of the page, positioned at the first document
+	 * @throws Exception if the request fails after all retries
+	 */
+	ChangesParser readAllDocs(String startKey, boolean skipStartKey, String endKey, int limit, boolean getDocument) throws Exception;
+	
+	/**
+	 * Read documents by id with the _all_docs API
+	 * @param ids the document ids
+	 * @param getDocument true to include the documents
+	 * @return the parser of the response, positioned at the first document.
+	 * Rows of missing documents have no id, rows of deleted documents have no document
+	 * @throws Exception if the request fails after all retries
+	 */
+	ChangesParser readAllDocs(List<String> ids, boolean getDocument) throws Exception;
+	
 }
@@ -7,12 +7,15 @@
 
 package com.ibm.streamsx.cloudant.client;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.stream.Collectors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
@@ -21,8 +24,15 @@ import com.cloudant.client.api.ClientBuilder;
 import com.cloudant.client.api.CloudantClient;
 import com.cloudant.client.api.Database;
 import com.cloudant.client.api.model.ChangesResult;
-import com.cloudant.client.api.model.Response;
+import com.cloudant.client.org.lightcouch.CouchDbException;
+import com.cloudant.client.org.lightcouch.NoDocumentException;
+import com.cloudant.http.Http;
+import com.cloudant.http.HttpConnection;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.ibm.streamsx.cloudant.client.AccountRateLimiter.RequestClass;
 
 /**
  * This class provides a client implementation using the officially supported Cloudant Java API
@@ -42,6 +52,94 @@ public class ClientImpl implements Client, ChangesReader {
 	private String readerSince = "0";
 	private Changes databaseChanges = null;
 	
+	// latest known revisions of stored documents, null if disabled
+	private RevisionCache revisionCache = null;
+	
+	// recently fetched documents, null if disabled
+	private DocumentCache documentCache = null;
+	
+	// retry handling for failed requests
+	private RetryPolicy retryPolicy = null;
+	private final RetryAfterInterceptor retryAfterInterceptor = new RetryAfterInterceptor();
+	
+	// limits the request rate of all clients of the account, null if not limited
+	private AccountRateLimiter rateLimiter = null;
+	
+	// used to parse responses of requests sent directly to the REST API
+	private static final Gson gson = new Gson();
+	
+	// the response status of a conditional request if the document was not modified
+	private static final int HTTP_NOT_MODIFIED = 304;
+	
+	// the running document reads of all clients, keyed by user, expected revision and document URL
+	private static final SingleFlight<String, FetchResult> documentReads = new SingleFlight<String, FetchResult>();
+	
+	// request bodies smaller than this are sent uncompressed, because compression would not save much
+	private static final int COMPRESSION_MIN_SIZE = 1024;
+	
+	// the response bodies are read into a buffer per thread, which is reused for the next response
+	private static final ThreadLocal<ResponseBuffer> responseBuffers = ThreadLocal.withInitial(ResponseBuffer::new);
+	
+	/*
+	 * a growing byte buffer that is read directly from a stream and keeps its capacity when reused
+	 */
+	private static class ResponseBuffer extends ByteArrayOutputStream {
+		
+		// the initial capacity, also used again after a large response
+		private static final int INITIAL_SIZE = 8192;
+		
+		// a larger buffer is not kept after use, so a single large document does not occupy memory forever
+		private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+		
+		ResponseBuffer() {
+			super(INITIAL_SIZE);
+		}
+		
+		void readFrom(InputStream in) throws IOException {
+			if (buf.length > MAX_RETAINED_SIZE) {
+				buf = new byte[INITIAL_SIZE];
+			}
+			reset();
+			while (true) {
+				if (count == buf.length) {
+					buf = Arrays.copyOf(buf, buf.length * 2);
+				}
+				int n = in.read(buf, count, buf.length - count);
+				if (n < 0) {
+					return;
+				}
+				count += n;
+			}
+		}
+		
+		String toUtf8String() {
+			return new String(buf, 0, count, StandardCharsets.UTF_8);
+		}
+	}
+	
+	// counts the bytes of request and response bodies, shared with the changes reader
+	private final TransferStatistics transferStatistics = new TransferStatistics();
+	
+	/*
+	 * a request against the database that can be retried 
+	 */
+	private interface RetryableRequest<T> {
+		T execute() throws Exception;
+	}
+	
+	/*
+	 * the parsed body and the HTTP status code of a response
+	 */
+	private static class JsonResponse {
+		final int statusCode;
+		final JsonElement body;
+		
+		JsonResponse(int statusCode, JsonElement body) {
+			this.statusCode = statusCode;
+			this.body = body;
+		}
+	}
+	
 	public ClientImpl(Configuration config) {
 		super();
 		this.cfg = config;
@@ -93,9 +191,19 @@ public class ClientImpl implements Client, ChangesReader {
 		cb.connectTimeout(cfg.getConnectTimeout(), java.util.concurrent.TimeUnit.SECONDS);
 		cb.readTimeout(cfg.getReadTimeout(), java.util.concurrent.TimeUnit.SECONDS);
 		cb.maxConnections(cfg.getMaxConnections());
+		cb.interceptors(retryAfterInterceptor);
 		cloudantClient = cb.build();
+		retryPolicy = RetryPolicy.fromConfiguration(cfg);
+		rateLimiter = AccountRateLimiter.getShared(cfg);
 		
 		database = cloudantClient.database(cfg.getDatabase(), false);
+		
+		if (cfg.getRevisionCacheSize() > 0) {
+			revisionCache = new RevisionCache(cfg.getRevisionCacheSize());
+		}
+		if (cfg.getDocumentCacheSize() > 0) {
+			documentCache = new DocumentCache(cfg.getDocumentCacheSize(), cfg.getDocumentCacheMaxBytes(), cfg.getDocumentCacheTTL(), cfg.isDocumentCacheRevalidate());
+		}
 		logger.trace("successfully connected to database, config: " + cfg.toString());
 
 		return true;
@@ -111,28 +219,183 @@ public class ClientImpl implements Client, ChangesReader {
 		logger.trace("Disconnected client");
 	}
 
+	/*
+	 * execute the request and retry it according to the retry policy, if it fails with a transient error.
+	 * The exception of the last attempt is thrown, if no more retry is allowed
+	 * idempotent must be false if the request may have changed the database although it failed
+	 * Each attempt waits until the rate limit of the request class allows the given number of requests
+	 */
+	private <T> T executeWithRetry(String operation, RequestClass requestClass, int permits, boolean idempotent, RetryableRequest<T> request) throws Exception {
+		long startTime = System.currentTimeMillis();
+		for (int retry = 1; ; retry++) {
+			if (null != rateLimiter) {
+				rateLimiter.acquire(requestClass, permits);
+			}
+			try {
+				return request.execute();
+			} catch (Exception e) {
+				ErrorCategory category = ErrorCategory.fromException(e);
+				long delay = retryPolicy.getRetryDelay(category, idempotent, retry, startTime, retryAfterInterceptor.getRetryAfter());
+				if (delay < 0) {
+					throw e;
+				}
+				logger.warn(operation + " failed with error category " + category.name() + ", retry " + retry + " in " + delay + " ms: " + e.getMessage());
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+	
+	/*
+	 * post a JSON request body to the database and return the parsed response
+	 * path is appended to the database URL
+	 */
+	private JsonResponse postJson(String path, String body) throws Exception {
+		URL url = new URL(database.getDBUri().toString() + path);
+		return executeJson(withBody(Http.POST(url, "application/json"), body));
+	}
+	
+	/*
+	 * execute the request and return the parsed response
+	 */
+	private JsonResponse executeJson(HttpConnection request) throws Exception {
+		HttpConnection connection = cloudantClient.executeRequest(request);
+		try {
+			return new JsonResponse(connection.getConnection().getResponseCode(), gson.fromJson(readResponse(connection), JsonElement.class));
+		} finally {
+			connection.disconnect();
+		}
+	}
+	
+	/*
+	 * set the request body, gzip compressed if enabled, and accept a compressed response
+	 */
+	private HttpConnection withBody(HttpConnection request, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		if (cfg.isCompressRequests() && bytes.length >= COMPRESSION_MIN_SIZE) {
+			request.requestProperty("Content-Encoding", TransferStatistics.GZIP);
+			bytes = transferStatistics.compress(bytes);
+		} else {
+			transferStatistics.countSent(bytes.length, bytes.length);
+		}
+		return acceptCompressed(request).setRequestBody(bytes);
+	}
+	
+	/*
+	 * request a gzip compressed response, it is decoded by readResponse() 
+	 */
+	private static HttpConnection acceptCompressed(HttpConnection request) {
+		return request.requestProperty("Accept-Encoding", TransferStatistics.GZIP);
+	}
+	
+	/*
+	 * make the request conditional on the document revision, the ETag of a document is its quoted revision
+	 */
+	private static HttpConnection ifNoneMatch(HttpConnection request, String revision) {
+		if (null == revision) {
+			return request;
+		}
+		return request.requestProperty("If-None-Match", "\"" + revision + "\"");
+	}
+	
+	/*
+	 * get the decoded response body stream of a successful request
+	 */
+	private InputStream getResponseStream(HttpConnection connection) throws IOException {
+		return transferStatistics.decode(connection.getConnection().getInputStream(), connection.getConnection().getContentEncoding());
+	}
+	
+	/*
+	 * read the complete decoded response body of a successful request
+	 */
+	private String readResponse(HttpConnection connection) throws IOException {
+		InputStream in = getResponseStream(connection);
+		try {
+			ResponseBuffer buffer = responseBuffers.get();
+			buffer.readFrom(in);
+			return buffer.toUtf8String();
+		} finally {
+			in.close();
+		}
+	}
+	
+	/*
+	 * read a response body stream completely and return its bytes unchanged
+	 */
+	private static byte[] readBytes(InputStream in) throws IOException {
+		try {
+			ResponseBuffer buffer = responseBuffers.get();
+			buffer.readFrom(in);
+			return buffer.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+	
+	/*
+	 * get a string member of a response object, null if not present
+	 */
+	private static String getResponseString(JsonObject response, String name) {
+		JsonElement e = response.get(name);
+		if (null == e || e.isJsonNull()) return null;
+		return e.getAsString();
+	}
+	
+	/*
+	 * get the HTTP status code of a failed request, 0 if no response was received
+	 */
+	private static int getStatusCode(Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof CouchDbException) {
+				return ((CouchDbException) t).getStatusCode();
+			}
+		}
+		return 0;
+	}
+	
+	/*
+	 * get the HTTP status code matching the error of a single document in a _bulk_docs response,
+	 * the status of the bulk request itself is used for unknown errors
+	 */
+	private static int getBulkStatusCode(String error, int requestStatusCode) {
+		if ("conflict".equals(error)) return 409;
+		if ("forbidden".equals(error)) return 403;
+		if ("unauthorized".equals(error)) return 401;
+		return requestStatusCode;
+	}
+	
 	/*
 	 * Perform document save or update on the database
 	 * if update is false, the doc must not contain a _rev attribute
 	 * if update flag is true, the document must contain a _rev attrribute 
+	 * The document text is sent as it is, it is not parsed 
 	 */
-	private StoreResult saveOrUpdate(JsonObject docObject, boolean update) {
+	private StoreResult saveOrUpdate(final String document, final boolean update, boolean hasId) {
 		StoreResult result = new StoreResult();
 		String error = null;
 		
-		Response response = null;
+		// a save without id creates a new document each time, so it is retried only if the server did not process it 
+		boolean idempotent = update || hasId;
+		
+		// POST to the database creates the document, or updates it if a _rev is contained
+		JsonResponse jsonResponse = null;
 		try {
-			if (update) {
-				response = database.update(docObject);
-			} else {
-				response = database.save(docObject);
-			}
+			jsonResponse = executeWithRetry("Save", RequestClass.WRITE, 1, idempotent, () -> postJson("", document));
 		} catch (Exception e) {
 			error = "Exception during save: " + e.getMessage();
 			result.setErrorMessage(error);
-			if (e.getClass().getName().equals("com.cloudant.client.org.lightcouch.DocumentConflictException")) {
+			result.setHttpStatusCode(getStatusCode(e));
+			ErrorCategory category = ErrorCategory.fromException(e);
+			if (category == ErrorCategory.CONFLICT) {
 				result.setStatus(StoreResult.Status.DOCCONFLICT);
 				logger.trace("Document conflict during save/update, giving up");
+			} else if (category == ErrorCategory.TIMEOUT) {
+				result.setStatus(StoreResult.Status.TIMEOUT);
+				logger.error(error);
 			} else {
 				result.setStatus(StoreResult.Status.OTHER);
 				logger.error(error);
@@ -143,28 +406,73 @@ public class ClientImpl implements Client, ChangesReader {
 		if (null != error) return result;
 		
 		// check response if errors occured
-		if (response != null && response.getError() != null && !response.getError().equals("")) {
+		result.setHttpStatusCode(jsonResponse.statusCode);
+		JsonObject response = (null != jsonResponse.body && jsonResponse.body.isJsonObject()) ? jsonResponse.body.getAsJsonObject() : null;
+		String responseError = (null == response) ? null : getResponseString(response, "error");
+		if (responseError != null && !responseError.equals("")) {
 			result.setStatus(StoreResult.Status.OTHER);
-			result.setErrorMessage(response.getError());
+			result.setErrorMessage(responseError);
 		} else {
 			result.setStatus(StoreResult.Status.OK);
+			if (null != response) {
+				result.setId(getResponseString(response, "id"));
+				result.setRevision(getResponseString(response, "rev"));
+				cacheRevision(result.getId(), result.getRevision());
+			}
 		}
 
-		// TODO remove this after testing
 		if (null != response) {
-			logger.trace("ERR : " + response.getError());
-			logger.trace("REAS: " + response.getReason());
-			logger.trace("STAT: " + response.getStatusCode());
+			logger.trace("Save response: " + response.toString());
 		}
 		
 		return result;
 	}
 	
-	@Override
-	public StoreResult storeDocument(String document, String id, String revision) {
-		StoreResult result = new StoreResult();
-		
-		// convert to object and set id and rev if needed
+	/*
+	 * set the revision on a copy of the document text
+	 */
+	private static String withRevision(String document, String revision) {
+		JsonString doc = new JsonString(document);
+		doc.setTopLevelStringProperty("_rev", revision);
+		return doc.getString();
+	}
+	
+	/*
+	 * remember the latest revision of a document, if the revision cache is enabled 
+	 */
+	private void cacheRevision(String id, String revision) {
+		if (null != revisionCache) {
+			revisionCache.put(id, revision);
+		}
+		// a new revision exists, the cached latest version of the document is outdated
+		if (null != documentCache) {
+			documentCache.invalidate(id);
+		}
+	}
+
+	/*
+	 * get the cached revision of a document, null if not cached or the cache is disabled
+	 */
+	private String getCachedRevision(String id) {
+		if (null != revisionCache) {
+			return revisionCache.get(id);
+		}
+		return null;
+	}
+
+	/*
+	 * forget the cached revision, e.g. because it lead to a conflict
+	 */
+	private void removeCachedRevision(String id) {
+		if (null != revisionCache) {
+			revisionCache.remove(id);
+		}
+	}
+	
+	/*
+	 * convert the document to a JsonString and overwrite _id and _rev if given
+	 */
+	private JsonString prepareDocument(String document, String id, String revision) {
 		JsonString doc = new JsonString(document);
 		if (null != id && !id.equals("")) {
 			doc.setTopLevelStringProperty("_id", id);
@@ -172,7 +480,15 @@ public class ClientImpl implements Client, ChangesReader {
 		if (null != revision && !revision.equals("")) {
 			doc.setTopLevelStringProperty("_rev", revision);
 		}
-		// JsonObject docObject = doc.getJsonObject();
+		return doc;
+	}
+	
+	@Override
+	public StoreResult storeDocument(String document, String id, String revision) {
+		StoreResult result = new StoreResult();
+		
+		// set id and rev in the document text if needed
+		JsonString doc = prepareDocument(document, id, revision);
 
 		// check if id and/or rev are present. Combinations are handled as follows :
 		// id present / rev present
@@ -193,37 +509,61 @@ public class ClientImpl implements Client, ChangesReader {
 		
 		// case 1, update
 		if (hasId && hasRev) {
-			return saveOrUpdate(doc.getJsonObject(), true);
+			StoreResult updateRes = saveOrUpdate(doc.getString(), true, true);
+			if (updateRes.getStatus() == StoreResult.Status.DOCCONFLICT) {
+				removeCachedRevision(doc.getTopLevelStringProperty("_id"));
+			}
+			return updateRes;
 		}
 		
 		// case 4, save
 		if (!hasId && !hasRev) {
-			return saveOrUpdate(doc.getJsonObject(), false);
+			return saveOrUpdate(doc.getString(), false, false);
 		}
 
 		// case 2, save and update if fails
 		if (hasId && !hasRev) {
 			
+			String docString = doc.getString();
+			String docId = doc.getTopLevelStringProperty("_id");
+			
+			// if the latest revision is known, update directly. Fall back to save if the cached revision is outdated 
+			String cachedRev = getCachedRevision(docId);
+			if (null != cachedRev) {
+				logger.trace("update doc, cached revision: " + cachedRev);
+				StoreResult updateRes = saveOrUpdate(withRevision(docString, cachedRev), true, true);
+				if (updateRes.getStatus() != StoreResult.Status.DOCCONFLICT) {
+					return updateRes;
+				}
+				removeCachedRevision(docId);
+			}
+			
 			// first try to save
-			JsonObject docObject = doc.getJsonObject();
-			StoreResult saveRes = saveOrUpdate(docObject, false);
+			StoreResult saveRes = saveOrUpdate(docString, false, true);
 			if (saveRes.getStatus() != StoreResult.Status.DOCCONFLICT) {
 				// give up if another error occured
 				return saveRes;
 			} else {
-				// try to fix the revision 
-				FetchResult fetchRes = fetchDocument(doc.getTopLevelStringProperty("_id"));
-				if (!fetchRes.isValid()) {
-					result.setStatus(StoreResult.Status.CANTREAD);
-					result.setErrorMessage("Error during get revision: " + fetchRes.getErrorMessage());					
-					return result;
-					
+				// try to fix the revision, repeat if the document is changed concurrently between reading the revision and the update
+				StoreResult updateRes = null;
+				for (int retry = 0; retry <= retryPolicy.getMaxRetries(); retry++) {
+					FetchResult fetchRes = fetchRevision(docId);
+					if (!fetchRes.isValid()) {
+						result.setStatus(StoreResult.Status.CANTREAD);
+						result.setErrorMessage("Error during get revision: " + fetchRes.getErrorMessage());					
+						return result;
+						
+					}
+					String latestRev = fetchRes.getResult();
+					logger.trace("update doc, fetched revision: " + latestRev);
+					cacheRevision(docId, latestRev);
+					updateRes = saveOrUpdate(withRevision(docString, latestRev), true, true);
+					if (updateRes.getStatus() != StoreResult.Status.DOCCONFLICT) {
+						break;
+					}
+					removeCachedRevision(docId);
 				}
-				JsonString fetched = new JsonString(fetchRes.getResult());
-				String latestRev = fetched.getTopLevelStringProperty("_rev");
-				logger.trace("update doc, fetched revision: " + latestRev);
-				docObject.addProperty("_rev", latestRev);
-				return saveOrUpdate(docObject, true);
+				return updateRes;
 			}
 		}
 		
@@ -240,26 +580,265 @@ public class ClientImpl implements Client, ChangesReader {
 	public StoreResult storeDocument(String document) {
 		return storeDocument(document, null, null);
 	}
+
+	@Override
+	public List<StoreResult> storeDocuments(List<StoreRequest> documents) {
+		List<StoreResult> results = new ArrayList<StoreResult>(documents.size());
+		
+		// prepare the documents, the ones with invalid id/rev combination are not sent to the database
+		StringBuilder bulkBody = new StringBuilder("{\"docs\":[");
+		List<Integer> bulkIndex = new ArrayList<Integer>(documents.size());
+		List<Boolean> bulkHasRev = new ArrayList<Boolean>(documents.size());
+		
+		// without ids the documents are created again if the request is repeated
+		boolean idempotent = true;
+		for (StoreRequest req : documents) {
+			JsonString doc = prepareDocument(req.getDocument(), req.getId(), req.getRevision());
+			boolean hasId = (doc.getTopLevelStringProperty("_id") == null) ? false : true;
+			boolean hasRev = (doc.getTopLevelStringProperty("_rev") == null) ? false : true;
+			if (!hasId && hasRev) {
+				results.add(new StoreResult(StoreResult.Status.BADINPUT, "The document does not have an _id attribute, but has a _rev attribute. This combination is not allowed."));
+				continue;
+			}
+			
+			// use the cached revision for existing documents, a conflict is resolved by the single document store below
+			if (hasId && !hasRev) {
+				String cachedRev = getCachedRevision(doc.getTopLevelStringProperty("_id"));
+				if (null != cachedRev) {
+					doc.setTopLevelStringProperty("_rev", cachedRev);
+				}
+			}
+			results.add(null);
+			if (!bulkIndex.isEmpty()) {
+				bulkBody.append(',');
+			}
+			bulkBody.append(doc.getString());
+			bulkIndex.add(results.size() - 1);
+			bulkHasRev.add(hasRev);
+			idempotent = idempotent && hasId;
+		}
+		
+		if (bulkIndex.isEmpty()) {
+			return results;
+		}
+		bulkBody.append("]}");
+		final String body = bulkBody.toString();
+
+		JsonArray responses = null;
+		int requestStatusCode = 0;
+		try {
+			JsonResponse jsonResponse = executeWithRetry("Bulk save", RequestClass.WRITE, bulkIndex.size(), idempotent, () -> postJson("/_bulk_docs", body));
+			requestStatusCode = jsonResponse.statusCode;
+			responses = jsonResponse.body.getAsJsonArray();
+		} catch (Exception e) {
+			String error = "Exception during bulk save: " + e.getMessage();
+			logger.error(error);
+			for (Integer idx : bulkIndex) {
+				StoreResult result = new StoreResult(StoreResult.Status.OTHER, error);
+				result.setHttpStatusCode(getStatusCode(e));
+				results.set(idx, result);
+			}
+			return results;
+		}
+		
+		// the _bulk_docs API returns the responses in the same order as the documents were sent
+		for (int i = 0; i < bulkIndex.size(); i++) {
+			int idx = bulkIndex.get(i);
+			JsonObject response = (responses != null && i < responses.size()) ? responses.get(i).getAsJsonObject() : null;
+			if (null == response) {
+				results.set(idx, new StoreResult(StoreResult.Status.OTHER, "No response for document in bulk request"));
+				continue;
+			}
+			String responseId = getResponseString(response, "id");
+			String responseError = getResponseString(response, "error");
+			if (responseError == null || responseError.equals("")) {
+				StoreResult result = new StoreResult(StoreResult.Status.OK, "");
+				result.setId(responseId);
+				result.setRevision(getResponseString(response, "rev"));
+				result.setHttpStatusCode(requestStatusCode);
+				results.set(idx, result);
+				cacheRevision(responseId, result.getRevision());
+			} else if (responseError.equals("conflict")) {
+				removeCachedRevision(responseId);
+				if (bulkHasRev.get(i)) {
+					// the given revision is outdated, no retry in this case
+					StoreResult result = new StoreResult(StoreResult.Status.DOCCONFLICT, responseError + ": " + getResponseString(response, "reason"));
+					result.setId(responseId);
+					result.setHttpStatusCode(getBulkStatusCode(responseError, requestStatusCode));
+					results.set(idx, result);
+				} else {
+					// the document exists already, let the single document store fix the revision
+					logger.trace("Document conflict during bulk save, retry with single store, id: " + responseId);
+					StoreRequest req = documents.get(idx);
+					results.set(idx, storeDocument(req.getDocument(), req.getId(), req.getRevision()));
+				}
+			} else {
+				String error = responseError + ": " + getResponseString(response, "reason");
+				logger.error("Error during bulk save, id: " + responseId + ", " + error);
+				StoreResult result = new StoreResult(StoreResult.Status.OTHER, error);
+				result.setId(responseId);
+				result.setHttpStatusCode(getBulkStatusCode(responseError, requestStatusCode));
+				results.set(idx, result);
+			}
+		}
+		
+		return results;
+	}
 	
 	@Override
-	public FetchResult fetchDocument(String id, String revision) {
-		FetchResult res = new FetchResult();
-		java.io.InputStream inputStream = null;
+	public StoreResult storeAttachment(StoreRequest request) {
+		String id = request.getId();
+		if (null == id || id.equals("") || null == request.getAttachmentName() || request.getAttachmentName().equals("")) {
+			return new StoreResult(StoreResult.Status.BADINPUT, "An attachment needs a document id and an attachment name.");
+		}
 		
-		String error = null;
-		// try to read the document
-		try {		
+		// a conflict with the given revision is reported, no retry in this case
+		if (null != request.getRevision() && !request.getRevision().equals("")) {
+			StoreResult putRes = putAttachment(request, request.getRevision());
+			if (putRes.getStatus() == StoreResult.Status.DOCCONFLICT) {
+				removeCachedRevision(id);
+			}
+			return putRes;
+		}
+		
+		// use the latest revision, repeat if the document is changed concurrently between reading the revision and the update
+		String revision = getCachedRevision(id);
+		StoreResult putRes = null;
+		for (int retry = 0; retry <= retryPolicy.getMaxRetries(); retry++) {
 			if (null == revision) {
-				inputStream = database.find(id);
+				FetchResult fetchRes = fetchRevision(id);
+				if (fetchRes.isValid()) {
+					revision = fetchRes.getResult();
+				} else if (fetchRes.getStatus() != FetchResult.Status.NOTFOUND) {
+					return new StoreResult(StoreResult.Status.CANTREAD, "Error during get revision: " + fetchRes.getErrorMessage());
+				}
+				// without revision the document is created together with the attachment
+			}
+			logger.trace("put attachment, revision: " + revision);
+			putRes = putAttachment(request, revision);
+			if (putRes.getStatus() != StoreResult.Status.DOCCONFLICT) {
+				break;
+			}
+			removeCachedRevision(id);
+			revision = null;
+		}
+		return putRes;
+	}
+	
+	/*
+	 * PUT the attachment data as request body, the data is streamed from a new input stream for each attempt,
+	 * and for each resend of the client, e.g. after renewing an expired session cookie
+	 */
+	private StoreResult putAttachment(final StoreRequest request, String revision) {
+		StoreResult result = new StoreResult();
+		final String contentType = (null == request.getContentType() || request.getContentType().equals("")) ? "application/octet-stream" : request.getContentType();
+		try {
+			final URL url = new URL(UrlBuilder.attachmentUrl(database.getDBUri().toString(), request.getId(), request.getAttachmentName(), revision));
+			JsonResponse response = executeWithRetry("Put attachment", RequestClass.WRITE, 1, true, () -> {
+				transferStatistics.countSent(request.getAttachmentLength(), request.getAttachmentLength());
+				return executeJson(acceptCompressed(Http.PUT(url, contentType)).setRequestBody(() -> request.getAttachmentData().get(), request.getAttachmentLength()));
+			});
+			JsonObject body = response.body.getAsJsonObject();
+			result.setStatus(StoreResult.Status.OK);
+			result.setId(getResponseString(body, "id"));
+			result.setRevision(getResponseString(body, "rev"));
+			result.setHttpStatusCode(response.statusCode);
+			cacheRevision(result.getId(), result.getRevision());
+		} catch (Exception e) {
+			String error = "Exception during put attachment: " + e.getMessage();
+			result.setErrorMessage(error);
+			result.setHttpStatusCode(getStatusCode(e));
+			ErrorCategory category = ErrorCategory.fromException(e);
+			if (category == ErrorCategory.CONFLICT) {
+				result.setStatus(StoreResult.Status.DOCCONFLICT);
+				logger.trace("Document conflict during put attachment");
+			} else if (category == ErrorCategory.TIMEOUT) {
+				result.setStatus(StoreResult.Status.TIMEOUT);
+				logger.error(error);
 			} else {
-				inputStream = database.find(id,revision);
+				result.setStatus(StoreResult.Status.OTHER);
+				logger.error(error);
 			}
+		}
+		return result;
+	}
+	
+	@Override
+	public FetchResult fetchDocument(final String id, final String revision) {
+		if (null == documentCache) {
+			return readDocumentShared(id, revision, null);
+		}
+		String cached = documentCache.get(id, revision);
+		if (null != cached) {
+			return new FetchResult(FetchResult.Status.OK, cached, "");
+		}
+		
+		// revalidate an expired latest version, the database does not send the document again if it was not modified
+		String expiredRevision = (null == revision || revision.isEmpty()) ? documentCache.getExpiredRevision(id) : null;
+		if (null != expiredRevision) {
+			FetchResult res = readDocumentShared(id, null, expiredRevision);
+			if (null == res) {
+				cached = documentCache.revalidated(id);
+				if (null != cached) {
+					return new FetchResult(FetchResult.Status.OK, cached, "");
+				}
+				res = readDocumentShared(id, null, null);
+			} else {
+				documentCache.discardExpired(id);
+			}
+			if (res.getStatus() == FetchResult.Status.OK) {
+				documentCache.put(id, null, res.getResult());
+			}
+			return res;
+		}
+		
+		FetchResult res = readDocumentShared(id, revision, null);
+		if (res.getStatus() == FetchResult.Status.OK) {
+			documentCache.put(id, revision, res.getResult());
+		}
+		return res;
+	}
+	
+	/*
+	 * read a document from the database, concurrent reads of the same document by clients of the same user share one request
+	 */
+	private FetchResult readDocumentShared(final String id, final String revision, final String expectedRevision) {
+		String key = cfg.getUserName() + " " + expectedRevision + " " + UrlBuilder.documentUrl(database.getDBUri().toString(), id, revision);
+		return documentReads.execute(key, () -> readDocument(id, revision, expectedRevision));
+	}
+	
+	/*
+	 * read a document from the database, bypassing the document cache
+	 * if expectedRevision is given, the request is conditional and null is returned if the document still has this revision 
+	 */
+	private FetchResult readDocument(final String id, final String revision, final String expectedRevision) {
+		FetchResult res = new FetchResult();
+		HttpConnection connection = null;
+		InputStream inputStream = null;
+		
+		String error = null;
+		// try to read the document, the response body is read as a stream and decoded if compressed
+		try {
+			final URL url = new URL(UrlBuilder.documentUrl(database.getDBUri().toString(), id, revision));
+			connection = executeWithRetry("Find", RequestClass.READ, 1, true, () -> cloudantClient.executeRequest(ifNoneMatch(acceptCompressed(Http.GET(url)), expectedRevision)));
+			if (connection.getConnection().getResponseCode() == HTTP_NOT_MODIFIED) {
+				connection.disconnect();
+				return null;
+			}
+			inputStream = getResponseStream(connection);
 		} catch(Exception e) {
+			if (null != expectedRevision && getStatusCode(e) == HTTP_NOT_MODIFIED) {
+				return null;
+			}
 			error = "Exception during find: " + e.getMessage();
 			res.setErrorMessage(error);
-			if (e.getClass().getName().equals("com.cloudant.client.org.lightcouch.NoDocumentException")) {
+			ErrorCategory category = ErrorCategory.fromException(e);
+			if (category == ErrorCategory.NOTFOUND) {
 				res.setStatus(FetchResult.Status.NOTFOUND);
 				logger.trace("No Document found exception");
+			} else if (category == ErrorCategory.TIMEOUT) {
+				res.setStatus(FetchResult.Status.TIMEOUT);
+				logger.error(error);
 			} else {
 				res.setStatus(FetchResult.Status.OTHER);
 				logger.error(error);
@@ -267,18 +846,24 @@ public class ClientImpl implements Client, ChangesReader {
 
 		}
 		
-		// parse the result
+		// read the document bytes unchanged, they are decoded only if the document is used as string
 		if (null == inputStream) {
-			res.setErrorMessage("Unspecified error during fetching document with id: " + id);
+			if (null == error) {
+				res.setErrorMessage("Unspecified error during fetching document with id: " + id);
+			}
 		} else {
-			String result = new BufferedReader(new InputStreamReader(inputStream)).lines().collect(Collectors.joining("\n"));
 			try {
-				inputStream.close();
+				res.setResultBytes(readBytes(inputStream));
+				res.setStatus(FetchResult.Status.OK);
 			} catch (IOException e) {
-				logger.trace("error closing input stream: " + e.getMessage());
+				error = "Exception while reading document: " + e.getMessage();
+				logger.error(error);
+				res.setErrorMessage(error);
+				res.setStatus(toFetchStatus(ErrorCategory.fromException(e)));
 			}
-			res.setResult(result);
-			res.setStatus(FetchResult.Status.OK);
+		}
+		if (null != connection) {
+			connection.disconnect();
 		}
 		return res;
 	}
@@ -287,6 +872,152 @@ public class ClientImpl implements Client, ChangesReader {
 	public FetchResult fetchDocument(String id) {
 		return fetchDocument(id, null);
 	}
+	
+	@Override
+	public List<FetchResult> fetchDocuments(List<FetchRequest> documents) {
+		if (null == documentCache || documents.isEmpty()) {
+			return readDocuments(documents);
+		}
+		
+		// only the documents not found in the cache are read from the database
+		FetchResult[] results = new FetchResult[documents.size()];
+		List<FetchRequest> misses = new ArrayList<FetchRequest>();
+		List<Integer> missIndexes = new ArrayList<Integer>();
+		for (int i = 0; i < documents.size(); i++) {
+			FetchRequest req = documents.get(i);
+			String cached = documentCache.get(req.getId(), req.getRevision());
+			if (null != cached) {
+				results[i] = new FetchResult(FetchResult.Status.OK, cached, "");
+			} else {
+				// _bulk_get does not support conditional requests, expired documents are read again
+				if (null == req.getRevision() || req.getRevision().isEmpty()) {
+					documentCache.discardExpired(req.getId());
+				}
+				misses.add(req);
+				missIndexes.add(i);
+			}
+		}
+		if (!misses.isEmpty()) {
+			List<FetchResult> read = readDocuments(misses);
+			for (int i = 0; i < misses.size(); i++) {
+				FetchResult res = read.get(i);
+				FetchRequest req = misses.get(i);
+				if (res.getStatus() == FetchResult.Status.OK) {
+					documentCache.put(req.getId(), req.getRevision(), res.getResult());
+				}
+				results[missIndexes.get(i)] = res;
+			}
+		}
+		return Arrays.asList(results);
+	}
+	
+	/*
+	 * read documents with a single _bulk_get request, bypassing the document cache
+	 */
+	private List<FetchResult> readDocuments(List<FetchRequest> documents) {
+		List<FetchResult> results = new ArrayList<FetchResult>(documents.size());
+		if (documents.isEmpty()) {
+			return results;
+		}
+		
+		StringBuilder bulkBody = new StringBuilder("{\"docs\":[");
+		for (int i = 0; i < documents.size(); i++) {
+			FetchRequest req = documents.get(i);
+			if (i > 0) {
+				bulkBody.append(',');
+			}
+			bulkBody.append("{\"id\":").append(JsonScanner.quote(req.getId()));
+			if (null != req.getRevision() && !req.getRevision().equals("")) {
+				bulkBody.append(",\"rev\":").append(JsonScanner.quote(req.getRevision()));
+			}
+			bulkBody.append('}');
+		}
+		bulkBody.append("]}");
+		final String body = bulkBody.toString();
+		
+		JsonArray rows = null;
+		try {
+			rows = executeWithRetry("Bulk get", RequestClass.READ, documents.size(), true, () -> postJson("/_bulk_get", body)).body.getAsJsonObject().getAsJsonArray("results");
+		} catch (Exception e) {
+			String error = "Exception during bulk get: " + e.getMessage();
+			logger.error(error);
+			FetchResult.Status status = toFetchStatus(ErrorCategory.fromException(e));
+			for (int i = 0; i < documents.size(); i++) {
+				results.add(new FetchResult(status, null, error));
+			}
+			return results;
+		}
+		
+		// the _bulk_get API returns the results in the same order as the documents were requested
+		for (int i = 0; i < documents.size(); i++) {
+			JsonObject row = (null != rows && i < rows.size()) ? rows.get(i).getAsJsonObject() : null;
+			JsonArray docs = (null == row) ? null : row.getAsJsonArray("docs");
+			if (null == docs || docs.size() == 0) {
+				results.add(new FetchResult(FetchResult.Status.OTHER, null, "No response for document in bulk request, id: " + documents.get(i).getId()));
+				continue;
+			}
+			JsonObject doc = docs.get(0).getAsJsonObject();
+			if (doc.has("ok")) {
+				results.add(new FetchResult(FetchResult.Status.OK, doc.get("ok").toString(), ""));
+			} else {
+				JsonObject error = doc.getAsJsonObject("error");
+				String errorName = (null == error) ? null : getResponseString(error, "error");
+				String message = "Error during bulk get: " + errorName + ": " + ((null == error) ? null : getResponseString(error, "reason"));
+				if ("not_found".equals(errorName)) {
+					results.add(new FetchResult(FetchResult.Status.NOTFOUND, null, message));
+				} else {
+					logger.error(message + ", id: " + documents.get(i).getId());
+					results.add(new FetchResult(FetchResult.Status.OTHER, null, message));
+				}
+			}
+		}
+		return results;
+	}
+	
+	/*
+	 * get the fetch status matching the category of a failed request
+	 */
+	private static FetchResult.Status toFetchStatus(ErrorCategory category) {
+		if (category == ErrorCategory.NOTFOUND) {
+			return FetchResult.Status.NOTFOUND;
+		} else if (category == ErrorCategory.TIMEOUT) {
+			return FetchResult.Status.TIMEOUT;
+		}
+		return FetchResult.Status.OTHER;
+	}
+	
+	@Override
+	public FetchResult fetchRevision(String id) {
+		FetchResult res = new FetchResult();
+		HttpConnection connection = null;
+		
+		// HEAD returns the latest revision as ETag header, without the document body
+		try {
+			final URL url = new URL(UrlBuilder.documentUrl(database.getDBUri().toString(), id));
+			connection = executeWithRetry("Head", RequestClass.READ, 1, true, () -> cloudantClient.executeRequest(Http.HEAD(url)));
+			String etag = connection.getConnection().getHeaderField("ETag");
+			if (null == etag) {
+				res.setStatus(FetchResult.Status.OTHER);
+				res.setErrorMessage("No ETag header in response for document with id: " + id);
+			} else {
+				res.setResult(etag.replace("\"", ""));
+				res.setStatus(FetchResult.Status.OK);
+			}
+		} catch (NoDocumentException e) {
+			res.setStatus(FetchResult.Status.NOTFOUND);
+			res.setErrorMessage("Exception during head: " + e.getMessage());
+			logger.trace("No Document found exception");
+		} catch (Exception e) {
+			res.setStatus(FetchResult.Status.OTHER);
+			res.setErrorMessage("Exception during head: " + e.getMessage());
+			logger.error(res.getErrorMessage());
+		} finally {
+			if (null != connection) {
+				connection.disconnect();
+			}
+		}
+		return res;
+	}
 
 	@Override
 	public void setLogger(Logger logger) {
@@ -307,6 +1038,84 @@ public class ClientImpl implements Client, ChangesReader {
 		return database;
 	}
 
+	@Override
+	public TransferStatistics getTransferStatistics() {
+		return transferStatistics;
+	}
+
+	@Override
+	public DocumentCache getDocumentCache() {
+		return documentCache;
+	}
+
+	@Override
+	public String getUpdateSeq() throws Exception {
+		final URL url = new URL(database.getDBUri().toString());
+		JsonElement seq = executeWithRetry("Database info", RequestClass.READ, 1, true, () -> executeJson(acceptCompressed(Http.GET(url)))).body.getAsJsonObject().get("update_seq");
+		if (null == seq || seq.isJsonNull()) {
+			throw new IllegalStateException("No update_seq in database info");
+		}
+		// CouchDB 1.x returns a number, Cloudant an opaque string
+		return seq.isJsonPrimitive() ? seq.getAsString() : seq.toString();
+	}
+
+	@Override
+	public List<String> getKeyRangeBoundaries(int ranges) throws Exception {
+		List<String> boundaries = new ArrayList<String>();
+		String databaseUrl = database.getDBUri().toString();
+		final URL countUrl = new URL(UrlBuilder.allDocs(databaseUrl, null, null, 0, 0, false));
+		long totalRows = executeWithRetry("All docs", RequestClass.QUERY, 1, true, () -> executeJson(acceptCompressed(Http.GET(countUrl)))).body.getAsJsonObject().get("total_rows").getAsLong();
+
+		// the id at each offset total_rows * i / ranges starts a range
+		for (int i = 1; i < ranges; i++) {
+			long skip = totalRows * i / ranges;
+			if (skip == 0) {
+				continue;
+			}
+			final URL url = new URL(UrlBuilder.allDocs(databaseUrl, null, null, skip, 1, false));
+			JsonArray rows = executeWithRetry("All docs", RequestClass.QUERY, 1, true, () -> executeJson(acceptCompressed(Http.GET(url)))).body.getAsJsonObject().getAsJsonArray("rows");
+			if (rows.size() == 0) {
+				break;
+			}
+			String id = rows.get(0).getAsJsonObject().get("id").getAsString();
+			if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(id)) {
+				boundaries.add(id);
+			}
+		}
+		return boundaries;
+	}
+
+	@Override
+	public ChangesParser readAllDocs(String startKey, boolean skipStartKey, String endKey, int limit, boolean getDocument) throws Exception {
+		final URL url = new URL(UrlBuilder.allDocs(database.getDBUri().toString(), startKey, endKey, skipStartKey ? 1 : 0, limit, getDocument));
+		return executeWithRetry("All docs", RequestClass.QUERY, 1, true, () -> {
+			HttpConnection connection = cloudantClient.executeRequest(acceptCompressed(Http.GET(url)));
+			try {
+				return ChangesParser.forPage(getResponseStream(connection));
+			} finally {
+				connection.disconnect();
+			}
+		});
+	}
+
+	@Override
+	public ChangesParser readAllDocs(List<String> ids, boolean getDocument) throws Exception {
+		final URL url = new URL(UrlBuilder.allDocs(database.getDBUri().toString(), null, null, 0, -1, getDocument));
+		StringBuilder keys = new StringBuilder("{\"keys\":[");
+		for (int i = 0; i < ids.size(); i++) {
+			keys.append((i == 0) ? "" : ",").append(JsonScanner.quote(ids.get(i)));
+		}
+		final String body = keys.append("]}").toString();
+		return executeWithRetry("All docs", RequestClass.QUERY, 1, true, () -> {
+			HttpConnection connection = cloudantClient.executeRequest(withBody(Http.POST(url, "application/json"), body));
+			try {
+				return ChangesParser.forPage(getResponseStream(connection));
+			} finally {
+				connection.disconnect();
+			}
+		});
+	}
+
 	@Override
 	public ChangesReader getReader(boolean useAPI, String since, boolean getDocument) {
 		if (useAPI) {
@@ -315,7 +1124,7 @@ public class ClientImpl implements Client, ChangesReader {
 			}
 			return null;
 		}
-		DirectReader dr = new DirectReader(cfg);
+		DirectReader dr = new DirectReader(cfg, transferStatistics);
 		if (!dr.initReader(since, getDocument, cfg.getReaderHeartbeatInterval())) {
 			return null;
 		}
@@ -377,5 +1186,18 @@ public class ClientImpl implements Client, ChangesReader {
         	databaseChanges = null;
         }
 	}
+
+	/**
+	 * the feed of the Cloudant API is not reconnected by this reader
+	 */
+	@Override
+	public long getReconnects() {
+		return 0;
+	}
+
+	@Override
+	public long getReplayedChanges() {
+		return 0;
+	}
 	
 }
@@ -23,6 +23,22 @@ public class Configuration
 	private int readerHeartbeatInterval = 2000; // in milliseconds 
 	private int maxConnections = 6;
 	private String IAMApiKey = null;
+	private int revisionCacheSize = 0;
+	private int maxRetries = 3;
+	private long retryInitialDelay = 250; // in milliseconds
+	private long retryMaxDelay = 30000; // in milliseconds
+	private long retryDeadline = 60000; // in milliseconds
+	private boolean compressRequests = false;
+	private double readRateLimit = 0; // requests per second, 0 is unlimited
+	private double writeRateLimit = 0; // requests per second, 0 is unlimited
+	private double queryRateLimit = 0; // requests per second, 0 is unlimited
+	private int documentCacheSize = 0; // number of documents, 0 disables the cache
+	private long documentCacheMaxBytes = 16 * 1024 * 1024;
+	private long documentCacheTTL = 60000; // in milliseconds
+	private boolean documentCacheRevalidate = false;
+	private int changesBatchSize = 0; // changes per page in catch-up mode, 0 disables catch-up
+	private long changesCatchUpThreshold = 1000; // pending changes below which the continuous feed is used
+	private int changesSeqInterval = 1; // rows per computed sequence value
 	
 	public static Configuration getDefaultConfiguration() {
 		return new Configuration();
@@ -116,12 +132,147 @@ public class Configuration
 		this.IAMApiKey = IAMApiKey;
 	}
 
+	public int getRevisionCacheSize() {
+		return revisionCacheSize;
+	}
+
+	public void setRevisionCacheSize(int revisionCacheSize) {
+		this.revisionCacheSize = revisionCacheSize;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public long getRetryInitialDelay() {
+		return retryInitialDelay;
+	}
+
+	public void setRetryInitialDelay(long retryInitialDelay) {
+		this.retryInitialDelay = retryInitialDelay;
+	}
+
+	public long getRetryMaxDelay() {
+		return retryMaxDelay;
+	}
+
+	public void setRetryMaxDelay(long retryMaxDelay) {
+		this.retryMaxDelay = retryMaxDelay;
+	}
+
+	public long getRetryDeadline() {
+		return retryDeadline;
+	}
+
+	public void setRetryDeadline(long retryDeadline) {
+		this.retryDeadline = retryDeadline;
+	}
+
+	public boolean isCompressRequests() {
+		return compressRequests;
+	}
+
+	public void setCompressRequests(boolean compressRequests) {
+		this.compressRequests = compressRequests;
+	}
+
+	public double getReadRateLimit() {
+		return readRateLimit;
+	}
+
+	public void setReadRateLimit(double readRateLimit) {
+		this.readRateLimit = readRateLimit;
+	}
+
+	public double getWriteRateLimit() {
+		return writeRateLimit;
+	}
+
+	public void setWriteRateLimit(double writeRateLimit) {
+		this.writeRateLimit = writeRateLimit;
+	}
+
+	public double getQueryRateLimit() {
+		return queryRateLimit;
+	}
+
+	public void setQueryRateLimit(double queryRateLimit) {
+		this.queryRateLimit = queryRateLimit;
+	}
+
+	public int getDocumentCacheSize() {
+		return documentCacheSize;
+	}
+
+	public void setDocumentCacheSize(int documentCacheSize) {
+		this.documentCacheSize = documentCacheSize;
+	}
+
+	public long getDocumentCacheMaxBytes() {
+		return documentCacheMaxBytes;
+	}
+
+	public void setDocumentCacheMaxBytes(long documentCacheMaxBytes) {
+		this.documentCacheMaxBytes = documentCacheMaxBytes;
+	}
+
+	public long getDocumentCacheTTL() {
+		return documentCacheTTL;
+	}
+
+	public void setDocumentCacheTTL(long documentCacheTTL) {
+		this.documentCacheTTL = documentCacheTTL;
+	}
+
+	public boolean isDocumentCacheRevalidate() {
+		return documentCacheRevalidate;
+	}
+
+	public void setDocumentCacheRevalidate(boolean documentCacheRevalidate) {
+		this.documentCacheRevalidate = documentCacheRevalidate;
+	}
+
+	public int getChangesBatchSize() {
+		return changesBatchSize;
+	}
+
+	public void setChangesBatchSize(int changesBatchSize) {
+		this.changesBatchSize = changesBatchSize;
+	}
+
+	public long getChangesCatchUpThreshold() {
+		return changesCatchUpThreshold;
+	}
+
+	public void setChangesCatchUpThreshold(long changesCatchUpThreshold) {
+		this.changesCatchUpThreshold = changesCatchUpThreshold;
+	}
+
+	public int getChangesSeqInterval() {
+		return changesSeqInterval;
+	}
+
+	public void setChangesSeqInterval(int changesSeqInterval) {
+		this.changesSeqInterval = changesSeqInterval;
+	}
+
 	@Override
 	public String toString() {
 		return "Configuration [url=" + url + ", userName=" + userName + ", password=" + password + ", database="
 				+ database + ", vcapService=" + vcapService + ", disableSSLVerification=" + disableSSLVerification
 				+ ", readTimeout=" + readTimeout + ", connectTimeout=" + connectTimeout + ", readerHeartbeatInterval="
-				+ readerHeartbeatInterval + ", maxConnections=" + maxConnections + ", IAMApiKey=" + IAMApiKey + "]";
+				+ readerHeartbeatInterval + ", maxConnections=" + maxConnections + ", IAMApiKey=" + IAMApiKey
+				+ ", revisionCacheSize=" + revisionCacheSize + ", maxRetries=" + maxRetries + ", retryInitialDelay=" + retryInitialDelay
+				+ ", retryMaxDelay=" + retryMaxDelay + ", retryDeadline=" + retryDeadline
+				+ ", compressRequests=" + compressRequests + ", readRateLimit=" + readRateLimit + ", writeRateLimit=" + writeRateLimit
+				+ ", queryRateLimit=" + queryRateLimit + ", documentCacheSize=" + documentCacheSize
+				+ ", documentCacheMaxBytes=" + documentCacheMaxBytes + ", documentCacheTTL=" + documentCacheTTL
+				+ ", documentCacheRevalidate=" + documentCacheRevalidate + ", changesBatchSize=" + changesBatchSize
+				+ ", changesCatchUpThreshold=" + changesCatchUpThreshold + ", changesSeqInterval=" + changesSeqInterval + "]";
 	}
 	
 }
@@ -7,17 +7,12 @@
 
 package com.ibm.streamsx.cloudant.client;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-
 import okhttp3.Credentials;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -32,14 +27,36 @@ public class DirectReader implements ChangesReader {
     private int heartbeat;
 
     private Configuration cfg = null;
+    
+    // counts the received bytes, the response is requested gzip compressed
+    private TransferStatistics transferStatistics = null;
 
-    private BufferedReader breader = null;
+    // parses the rows of the feed on the response bytes
+    private ChangesParser parser = null;
+    
+    // the result returned by getNext(), it is reused for every change
+    private final ReaderResult result = new ReaderResult();
+    
+    // true while the history is read in pages from the normal feed, before switching to the continuous feed
+    private boolean catchingUp = false;
+    
+    // the number of failed reads, connection attempts and closed feeds since the last change was received
+    private int failures = 0;
+    
+    // true if the feed delivered changes since it was opened
+    private boolean changesReceived = false;
     
-    private static final Gson gson = new Gson();
+    // the number of changes received after the last sequence value, they are received again after a reconnect
+    private long changesSinceSeq = 0;
+    
+    // statistics of the reconnects
+    private long reconnects = 0;
+    private long replayedChanges = 0;
 
-	public DirectReader(Configuration cfg) {
+	public DirectReader(Configuration cfg, TransferStatistics transferStatistics) {
 		super();
 		this.cfg = cfg;
+		this.transferStatistics = transferStatistics;
 	}
 	
 	public boolean initReader(String since, boolean getDocument, int heartbeat) {
@@ -47,9 +64,12 @@ public class DirectReader implements ChangesReader {
 		this.getDocument = getDocument;
 		this.heartbeat = heartbeat;
 		
+		// catch up in pages if enabled, the first page tells how far behind the reader is
+		this.catchingUp = cfg.getChangesBatchSize() > 0;
+		
 		boolean success = false;
 		try {
-			breader = createReaderFromSeq();
+			openFeed();
 			success = true;
 		} catch (IOException | BadRequestException | ServerException | UnexpectedResponseException e) {
 			// TODO Auto-generated catch block
@@ -59,72 +79,152 @@ public class DirectReader implements ChangesReader {
 		return success;
 	}
 
+	/**
+	 * read the next change. The returned result is reused, its values are only valid until the next call.
+	 * If the feed is closed or fails, the reader reconnects with increasing delay and resumes at the last sequence value received.
+	 * The calls returning while the reader is disconnected return a heartbeat or an error.
+	 */
 	@Override
 	public ReaderResult getNext() {
-		ReaderResult res = new ReaderResult();
-        String line = null;
-
-        // Read the next line (empty = heartbeat, ignore; null = end of stream)
-        try {
-			line = breader.readLine();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		result.clear();
+		try {
+			if (null == parser) {
+				reconnect();
+			} else if (parser.next(result, getDocument)) {
+				if (result.hasChange()) {
+					failures = 0;
+					changesReceived = true;
+					if (null != result.getSeq()) {
+						since = result.getSeq();
+						changesSinceSeq = 0;
+					} else {
+						changesSinceSeq++;
+					}
+				}
+			} else if (catchingUp) {
+				nextPage();
+			} else {
+				logger.warn("Changes feed closed, reconnecting at sequence value: " + since);
+				// only the first close after changes reconnects immediately, a feed closed without changes backs off like a failure
+				if (!changesReceived) {
+					failures++;
+				}
+				closeFeed();
+				result.setStatus(ReaderResult.Status.HEARTBEAT);
+			}
+		} catch (IOException | IllegalArgumentException | BadRequestException | ServerException | UnexpectedResponseException e) {
+			logger.error("Error reading changes feed, reconnecting at sequence value: " + since + ", error: " + e.getMessage());
+			closeFeed();
+			failures++;
+			result.setStatus(ReaderResult.Status.ERROR);
+			result.setErrorMessage(e.getMessage());
 		}
-        
-        if (line != null && line.isEmpty()) {
-        	res.setStatus(ReaderResult.Status.HEARTBEAT);
-        	return res;
-        }
-
-        res.setStatus(ReaderResult.Status.OK);
-        
-        if (line.endsWith(",")) {
-        	line = line.substring(0, line.length() - 1);
-        }
-        
-        ChangesRow r = gson.fromJson(line, ChangesRow.class);
-        //System.out.println("line: " + line);        
-        res.setId(r.getId());
-        //System.out.println("idok");        
-        res.setDeleted(r.deleted);
-        //System.out.println("delok");
-        res.setSeq(r.getSeq());
-        //System.out.println("seqok");
-        
-        if (getDocument) {
-			JsonObject obj = r.getDoc();
-			String doc = obj.toString();
-			res.setDoc(doc);
+		return result;
+	}
+	
+	/*
+	 * open the feed again at the last sequence value, after waiting for the backoff delay of the failures so far
+	 * the changes after the last sequence value are received again
+	 */
+	private void reconnect() throws IOException, BadRequestException, ServerException, UnexpectedResponseException {
+		long delay = getReconnectDelay();
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result.setStatus(ReaderResult.Status.ERROR);
+				result.setErrorMessage("Interrupted while reconnecting");
+				return;
+			}
 		}
+		openFeed();
+		reconnects++;
+		replayedChanges += changesSinceSeq;
+		changesSinceSeq = 0;
+		logger.info("Reconnected to changes feed at sequence value: " + since);
+		result.setStatus(ReaderResult.Status.HEARTBEAT);
+	}
+	
+	/*
+	 * the first reconnect after a feed delivered changes is immediate, the delay doubles with each failure up to the max delay
+	 */
+	private long getReconnectDelay() {
+		if (failures == 0) {
+			return 0;
+		}
+		long delay = cfg.getRetryInitialDelay() << Math.min(failures - 1, 30);
+		return Math.min(delay, cfg.getRetryMaxDelay());
+	}
+	
+	private void closeFeed() {
+		if (null != parser) {
+			parser.close();
+			parser = null;
+		}
+		changesReceived = false;
+	}
+	
+	/**
+	 * @return the number of times the feed was opened again after it was closed or failed
+	 */
+	@Override
+	public long getReconnects() {
+		return reconnects;
+	}
+	
+	/**
+	 * @return the number of changes received again after reconnects, because they were received after the last sequence value
+	 */
+	@Override
+	public long getReplayedChanges() {
+		return replayedChanges;
+	}
 
-		java.util.List<ChangesRow.Rev> revs = r.getChanges();
-		if (null != revs && revs.size() > 0) {
-			String rev = revs.get(0).getRev();
-			res.setRev(rev);
+	/*
+	 * continue after the current page, switch to the continuous feed if the reader is close to the head of the feed
+	 * the result is set to a heartbeat, so the caller gets control between the pages
+	 */
+	private void nextPage() throws IOException, BadRequestException, ServerException, UnexpectedResponseException {
+		if (null != parser.getLastSeq()) {
+			since = parser.getLastSeq();
+		}
+		if (parser.getPending() >= 0 && parser.getPending() <= cfg.getChangesCatchUpThreshold()) {
+			logger.info("Caught up with changes feed, " + parser.getPending() + " changes pending, switching to continuous feed at sequence value: " + since);
+			catchingUp = false;
+		}
+		openFeed();
+		result.setStatus(ReaderResult.Status.HEARTBEAT);
+	}
+	
+	/*
+	 * request the next page in catch-up mode, or the continuous feed
+	 */
+	private void openFeed() throws IOException, BadRequestException, ServerException, UnexpectedResponseException {
+		if (catchingUp) {
+			parser = ChangesParser.forPage(createReaderFromSeq("normal", cfg.getChangesBatchSize(), 0));
+		} else {
+			parser = new ChangesParser(createReaderFromSeq("continuous", 0, this.heartbeat));
 		}
-		
-		return res;
 	}
 
 	@Override
 	public void stopReading() {
-		// TODO Auto-generated method stub
-
+		closeFeed();
 	}
 
-	private BufferedReader createReaderFromSeq() throws IOException, BadRequestException, ServerException, UnexpectedResponseException {
+	private InputStream createReaderFromSeq(String feed, long limit, long heartbeat) throws IOException, BadRequestException, ServerException, UnexpectedResponseException {
 
 		String url = UrlBuilder.changes(
         		cfg.getUrl(),
         		cfg.getDatabase(),
-        		"continuous",
+        		feed,
         		this.since,
         		0,
-        		0,
+        		limit,
         		this.getDocument,
-        		this.heartbeat,
-        		1
+        		heartbeat,
+        		cfg.getChangesSeqInterval()
         );
 
 		logger.trace("Starting changes watcher for URL: " + url);
@@ -132,6 +232,8 @@ public class DirectReader implements ChangesReader {
         Request.Builder builder = new Request.Builder().url(url);
         String credential = Credentials.basic(cfg.getUserName(), cfg.getPassword());
         builder.header("Authorization", credential);
+        // setting the header disables the transparent decoding of OkHttp, the stream is decoded below to count the bytes
+        builder.header("Accept-Encoding", TransferStatistics.GZIP);
         Request request = builder.build();
         
         OkHttpClient client = new OkHttpClient().newBuilder().
@@ -143,8 +245,7 @@ public class DirectReader implements ChangesReader {
         int status_code = response.code();
 
         if (status_code == 200) {
-            InputStream in = response.body().byteStream();
-            return new BufferedReader(new InputStreamReader(in));
+            return transferStatistics.decode(response.body().byteStream(), response.header("Content-Encoding"));
         } else if (status_code > 400 && status_code < 500) {
             response.close();
             throw new BadRequestException(status_code);
@@ -0,0 +1,238 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache for fetched documents, keyed by id and revision.
+ * Documents fetched without revision are the latest version at the time of the fetch, they expire after the TTL.
+ * Documents fetched with a given revision never change, they are only removed if the cache is full.
+ * If the max number of entries or the max number of bytes is exceeded, the least recently used entries are removed.
+ * If revalidation is enabled, expired documents are kept together with their revision, so the client can ask the
+ * database if the document was modified (If-None-Match) instead of transferring it again.
+ * The cache is thread safe.
+ */
+public class DocumentCache {
+
+	// a cached document, its UTF-8 size, its revision if known, and the time it expires, 0 if it does not expire
+	private static class Entry {
+		final String document;
+		final long size;
+		final String revision;
+		long expires;
+
+		Entry(String document, long size, String revision, long expires) {
+			this.document = document;
+			this.size = size;
+			this.revision = revision;
+			this.expires = expires;
+		}
+
+		boolean isExpired(long now) {
+			return expires != 0 && expires <= now;
+		}
+	}
+
+	// the entries in access order
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	// the limits
+	private final int maxEntries;
+	private final long maxBytes;
+	private final long ttl;
+
+	// keep expired documents for revalidation
+	private final boolean revalidate;
+
+	// the UTF-8 size of all cached documents
+	private long bytes = 0;
+
+	// statistics
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * construct the cache
+	 * @param maxEntries the max number of documents
+	 * @param maxBytes the max total UTF-8 size of the documents
+	 * @param ttl the time in milliseconds the latest version of a document is cached
+	 */
+	public DocumentCache(int maxEntries, long maxBytes, long ttl) {
+		this(maxEntries, maxBytes, ttl, false);
+	}
+
+	/**
+	 * construct the cache
+	 * @param maxEntries the max number of documents
+	 * @param maxBytes the max total UTF-8 size of the documents
+	 * @param ttl the time in milliseconds the latest version of a document is cached
+	 * @param revalidate keep expired documents, so they can be revalidated
+	 */
+	public DocumentCache(int maxEntries, long maxBytes, long ttl, boolean revalidate) {
+		super();
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.ttl = ttl;
+		this.revalidate = revalidate;
+	}
+
+	// revisions never contain a slash, so the key is unique
+	private static String key(String id, String revision) {
+		return ((null == revision) ? "" : revision) + "/" + id;
+	}
+
+	/**
+	 * Get a document. An expired document that can be revalidated is kept and not counted as hit or miss,
+	 * until the caller resolves it with {@link #revalidated(String)} or {@link #discardExpired(String)}
+	 * @param id the document id
+	 * @param revision the revision, null or empty for the latest revision
+	 * @return the cached document, or null if it is not cached or expired
+	 */
+	public synchronized String get(String id, String revision) {
+		String key = key(id, emptyToNull(revision));
+		Entry entry = entries.get(key);
+		if (null != entry && entry.isExpired(System.currentTimeMillis())) {
+			if (revalidate && null != entry.revision) {
+				return null;
+			}
+			remove(key);
+			evictions++;
+			entry = null;
+		}
+		if (null == entry) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.document;
+	}
+
+	/**
+	 * add a fetched document. Documents larger than the max number of bytes are not cached
+	 * @param id the document id
+	 * @param revision the revision used to fetch the document, null or empty for the latest revision
+	 * @param document the document
+	 */
+	public synchronized void put(String id, String revision, String document) {
+		revision = emptyToNull(revision);
+		if (null == id || null == document) {
+			return;
+		}
+		long size = TransferStatistics.utf8Length(document);
+		if (size > maxBytes) {
+			return;
+		}
+		String key = key(id, revision);
+		remove(key);
+		long expires = (null == revision) ? System.currentTimeMillis() + ttl : 0;
+		entries.put(key, new Entry(document, size, (revalidate && null == revision) ? getRevision(document) : null, expires));
+		bytes += size;
+
+		// remove the least recently used entries until the limits are met
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+			Map.Entry<String, Entry> eldest = it.next();
+			bytes -= eldest.getValue().size;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * @param id the document id
+	 * @return the revision of the expired latest version of the document, null if there is nothing to revalidate
+	 */
+	public synchronized String getExpiredRevision(String id) {
+		Entry entry = entries.get(key(id, null));
+		if (null == entry || !entry.isExpired(System.currentTimeMillis())) {
+			return null;
+		}
+		return entry.revision;
+	}
+
+	/**
+	 * The database confirmed that the expired latest version of a document was not modified.
+	 * The document is cached for another TTL and the lookup is counted as hit
+	 * @param id the document id
+	 * @return the document, null if it was removed from the cache meanwhile, in this case a miss is counted
+	 */
+	public synchronized String revalidated(String id) {
+		Entry entry = entries.get(key(id, null));
+		if (null == entry) {
+			misses++;
+			return null;
+		}
+		entry.expires = System.currentTimeMillis() + ttl;
+		hits++;
+		return entry.document;
+	}
+
+	/**
+	 * Remove the expired latest version of a document, because it was modified or is fetched without revalidation.
+	 * The lookup is counted as miss. Does nothing if there is no expired version of the document
+	 * @param id the document id
+	 */
+	public synchronized void discardExpired(String id) {
+		String key = key(id, null);
+		Entry entry = entries.get(key);
+		if (null != entry && entry.isExpired(System.currentTimeMillis())) {
+			remove(key);
+			evictions++;
+			misses++;
+		}
+	}
+
+	/**
+	 * remove the latest version of a document, e.g. because it was updated
+	 * @param id the document id
+	 */
+	public synchronized void invalidate(String id) {
+		remove(key(id, null));
+	}
+
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (null != entry) {
+			bytes -= entry.size;
+		}
+	}
+
+	// the revision of a document, null if it cannot be determined
+	private static String getRevision(String document) {
+		try {
+			return JsonScanner.getTopLevelString(document, "_rev");
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static String emptyToNull(String revision) {
+		return (null == revision || revision.isEmpty()) ? null : revision;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+}
@@ -0,0 +1,88 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import com.cloudant.client.org.lightcouch.CouchDbException;
+import com.cloudant.client.org.lightcouch.DocumentConflictException;
+import com.cloudant.client.org.lightcouch.NoDocumentException;
+import com.cloudant.client.org.lightcouch.TooManyRequestsException;
+
+/**
+ * Classification of errors returned by Cloudant requests.
+ * The category determines if a failed request can be retried
+ */
+public enum ErrorCategory {
+	/** document update conflict (409) */
+	CONFLICT(false),
+	/** document or database not found (404) */
+	NOTFOUND(false),
+	/** request rejected because the rate limit is exceeded (429) */
+	RATELIMITED(true),
+	/** temporary server error (5xx) */
+	SERVERERROR(true),
+	/** no response received in time */
+	TIMEOUT(true),
+	/** network problem, e.g. connection refused or reset */
+	CONNECTION(true),
+	/** the request is invalid, e.g. bad credentials or document (4xx) */
+	BADREQUEST(false),
+	/** any other error */
+	OTHER(false);
+
+	private final boolean transientError;
+
+	private ErrorCategory(boolean transientError) {
+		this.transientError = transientError;
+	}
+
+	/**
+	 * @return true if the error is usually temporary, so the request can be retried 
+	 */
+	public boolean isTransient() {
+		return transientError;
+	}
+
+	/**
+	 * Classify a HTTP status code
+	 * @param status the HTTP status code of the response
+	 * @return the category 
+	 */
+	public static ErrorCategory fromStatus(int status) {
+		if (status == 409) return CONFLICT;
+		if (status == 404) return NOTFOUND;
+		if (status == 429) return RATELIMITED;
+		if (status == 408) return TIMEOUT;
+		if (status >= 500) return SERVERERROR;
+		if (status >= 400) return BADREQUEST;
+		return OTHER;
+	}
+
+	/**
+	 * Classify an exception thrown by the Cloudant client or the HTTP layer
+	 * @param e the exception
+	 * @return the category
+	 */
+	public static ErrorCategory fromException(Throwable e) {
+		if (e instanceof DocumentConflictException) return CONFLICT;
+		if (e instanceof NoDocumentException) return NOTFOUND;
+		if (e instanceof TooManyRequestsException) return RATELIMITED;
+		if (e instanceof CouchDbException && ((CouchDbException) e).getStatusCode() > 0) {
+			return fromStatus(((CouchDbException) e).getStatusCode());
+		}
+		// the client wraps IO errors, check the causes
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof InterruptedIOException) return TIMEOUT;
+			if (t instanceof IOException) return CONNECTION;
+		}
+		return OTHER;
+	}
+
+}
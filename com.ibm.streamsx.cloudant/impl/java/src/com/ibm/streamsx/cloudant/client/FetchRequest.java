@@ -0,0 +1,41 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+/**
+ * This class holds the input data for a single document fetch operation.
+ * It is used to pass multiple documents to a bulk fetch operation
+ *
+ */
+public class FetchRequest {
+
+	// the id of the document to fetch
+	private String id = null;
+
+	// optional revision, the latest revision is fetched if null or empty
+	private String revision = null;
+
+	public FetchRequest(String id, String revision) {
+		super();
+		this.id = id;
+		this.revision = revision;
+	}
+
+	public FetchRequest(String id) {
+		this(id, null);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getRevision() {
+		return revision;
+	}
+
+}
@@ -7,6 +7,8 @@
 
 package com.ibm.streamsx.cloudant.client;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * This class represents the result of a document fetch operation 
  * on the Cloudant database. It holds error indications as well as result information
@@ -28,9 +30,12 @@ public class FetchResult {
 	// outcome of the operation
 	private Status status = Status.UNKNOWN;
 
-	// the resulting string
+	// the resulting string, decoded from the result bytes when first requested
 	private String result = null;
 
+	// the resulting document as received, UTF-8 encoded, null if the result was created as string
+	private byte[] resultBytes = null;
+
 	// the error message, might be null or empty
 	private String ErrorMessage = "";
 
@@ -60,9 +65,22 @@ public class FetchResult {
 	}
 
 	public String getResult() {
+		if (null == result && null != resultBytes) {
+			result = new String(resultBytes, StandardCharsets.UTF_8);
+		}
 		return result;
 	}
 
+	/**
+	 * @return the result as UTF-8 bytes, exactly as received from the database if the result was set as bytes
+	 */
+	public byte[] getResultBytes() {
+		if (null == resultBytes && null != result) {
+			resultBytes = result.getBytes(StandardCharsets.UTF_8);
+		}
+		return resultBytes;
+	}
+
 	public String getErrorMessage() {
 		return ErrorMessage;
 	}
@@ -73,6 +91,16 @@ public class FetchResult {
 
 	public void setResult(String result) {
 		this.result = result;
+		this.resultBytes = null;
+	}
+
+	/**
+	 * set the result as UTF-8 bytes, it is decoded only if requested as string
+	 * @param resultBytes the result, the array is not copied
+	 */
+	public void setResultBytes(byte[] resultBytes) {
+		this.resultBytes = resultBytes;
+		this.result = null;
 	}
 
 	public void setErrorMessage(String errorMessage) {
@@ -0,0 +1,212 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Extracts the values of a set of fields from a JSON document with a streaming parser.
+ * The fields are given as paths of object member names separated by dots, e.g. "address.city".
+ * Only the members on the paths are read, all other values are skipped without building an object tree,
+ * and the parsing stops as soon as all fields are found.
+ * The values are converted to the Java type matching their {@link ValueType}.
+ * Instances are immutable and can be used by multiple threads.
+ */
+public class JsonProjection {
+
+	/**
+	 * The type a value is converted to
+	 */
+	public enum ValueType {
+		/** String, objects and arrays are returned as JSON text */
+		STRING,
+		/** Long */
+		LONG,
+		/** Double */
+		DOUBLE,
+		/** Boolean */
+		BOOLEAN,
+		/** List of String */
+		STRING_LIST,
+		/** List of Long */
+		LONG_LIST,
+		/** List of Double */
+		DOUBLE_LIST
+	}
+
+	// a member name on the path of one or more fields
+	private static class Node {
+		final Map<String, Node> children = new HashMap<String, Node>();
+		// the index of the field that ends at this node, -1 if none
+		int field = -1;
+	}
+
+	// used to read objects and arrays as JSON text
+	private static final TypeAdapter<JsonElement> elementAdapter = new Gson().getAdapter(JsonElement.class);
+
+	// the root of the member name tree
+	private final Node root = new Node();
+
+	// the types of the fields
+	private final ValueType[] types;
+
+	// the paths of the fields, for error messages
+	private final String[] paths;
+
+	/**
+	 * create the projection
+	 * @param paths the paths of the fields, members separated by dots
+	 * @param types the types of the fields
+	 * @throws IllegalArgumentException if a path is empty, given twice, or a prefix of another path
+	 */
+	public JsonProjection(List<String> paths, List<ValueType> types) {
+		super();
+		this.paths = paths.toArray(new String[paths.size()]);
+		this.types = types.toArray(new ValueType[types.size()]);
+		for (int i = 0; i < this.paths.length; i++) {
+			Node node = root;
+			for (String name : this.paths[i].split("\\.", -1)) {
+				if (name.isEmpty()) {
+					throw new IllegalArgumentException("Invalid path: " + this.paths[i]);
+				}
+				if (node.field >= 0) {
+					throw new IllegalArgumentException("Path " + this.paths[node.field] + " is a prefix of path " + this.paths[i]);
+				}
+				Node child = node.children.get(name);
+				if (null == child) {
+					child = new Node();
+					node.children.put(name, child);
+				}
+				node = child;
+			}
+			if (node.field >= 0 || !node.children.isEmpty()) {
+				throw new IllegalArgumentException("Path " + this.paths[i] + " is given twice or is a prefix of another path");
+			}
+			node.field = i;
+		}
+	}
+
+	/**
+	 * @return the number of fields
+	 */
+	public int size() {
+		return types.length;
+	}
+
+	/**
+	 * extract the fields from a document
+	 * @param document the JSON document
+	 * @return the values in the order of the paths, null for fields that are missing or null
+	 * @throws IOException if the document cannot be read or is not valid JSON
+	 * @throws IllegalArgumentException if a value cannot be converted to its type
+	 */
+	public Object[] extract(Reader document) throws IOException {
+		Object[] values = new Object[types.length];
+		JsonReader reader = new JsonReader(document);
+		if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+			readObject(reader, root, values, new int[] { types.length });
+		}
+		return values;
+	}
+
+	/*
+	 * read the members of an object, remaining is the number of fields not found yet
+	 * returns false if all fields are found and the reading can stop
+	 */
+	private boolean readObject(JsonReader reader, Node node, Object[] values, int[] remaining) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			Node child = node.children.get(reader.nextName());
+			if (null == child) {
+				reader.skipValue();
+			} else if (child.field >= 0) {
+				values[child.field] = readValue(reader, child.field);
+				if (--remaining[0] == 0) {
+					return false;
+				}
+			} else if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				if (!readObject(reader, child, values, remaining)) {
+					return false;
+				}
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return true;
+	}
+
+	private Object readValue(JsonReader reader, int field) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		try {
+			return readTypedValue(reader, field);
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new IllegalArgumentException("Value of " + paths[field] + " cannot be converted to " + types[field].name() + ": " + e.getMessage(), e);
+		}
+	}
+
+	private Object readTypedValue(JsonReader reader, int field) throws IOException {
+		switch (types[field]) {
+		case STRING:
+			return readString(reader);
+		case LONG:
+			return reader.nextLong();
+		case DOUBLE:
+			return reader.nextDouble();
+		case BOOLEAN:
+			return reader.nextBoolean();
+		default:
+			return readList(reader, field);
+		}
+	}
+
+	private static String readString(JsonReader reader) throws IOException {
+		JsonToken token = reader.peek();
+		if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+			return elementAdapter.read(reader).toString();
+		}
+		if (token == JsonToken.BOOLEAN) {
+			return Boolean.toString(reader.nextBoolean());
+		}
+		return reader.nextString();
+	}
+
+	private List<Object> readList(JsonReader reader, int field) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+			throw new IllegalArgumentException("Value of " + paths[field] + " is not an array");
+		}
+		List<Object> list = new ArrayList<Object>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (types[field] == ValueType.LONG_LIST) {
+				list.add(reader.nextLong());
+			} else if (types[field] == ValueType.DOUBLE_LIST) {
+				list.add(reader.nextDouble());
+			} else {
+				list.add(readString(reader));
+			}
+		}
+		reader.endArray();
+		return list;
+	}
+
+}
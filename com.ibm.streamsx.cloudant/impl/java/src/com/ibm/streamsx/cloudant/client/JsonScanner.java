@@ -0,0 +1,298 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+/**
+ * Scans the top level fields of a JSON object directly on its text, without building an object tree.
+ * Nested values are skipped by tracking string and bracket boundaries only.
+ * The scanner accepts strict JSON only. If the text is not a JSON object,
+ * an IllegalArgumentException is thrown, so the caller can fall back to a full parser.
+ */
+public class JsonScanner {
+
+	/**
+	 * Find the value of a top level field. If the field occurs more than once, the last occurrence is returned.
+	 * @param json the JSON object text
+	 * @param name the field name
+	 * @return start (inclusive) and end (exclusive) index of the value text, or null if the field is not present
+	 * @throws IllegalArgumentException if the text is not a valid JSON object
+	 */
+	public static int[] findTopLevelValue(String json, String name) {
+		int[] found = null;
+		int pos = skipWhitespace(json, 0);
+		expect(json, pos, '{');
+		pos = skipWhitespace(json, pos + 1);
+		if (pos < json.length() && json.charAt(pos) == '}') {
+			checkEnd(json, pos + 1);
+			return null;
+		}
+		while (true) {
+			// field name
+			expect(json, pos, '"');
+			int keyEnd = skipString(json, pos);
+			boolean match = keyEquals(json, pos + 1, keyEnd - 1, name);
+			pos = skipWhitespace(json, keyEnd);
+			expect(json, pos, ':');
+
+			// value
+			int valueStart = skipWhitespace(json, pos + 1);
+			int valueEnd = skipValue(json, valueStart);
+			if (match) {
+				found = new int[] { valueStart, valueEnd };
+			}
+
+			pos = skipWhitespace(json, valueEnd);
+			if (pos < json.length() && json.charAt(pos) == ',') {
+				pos = skipWhitespace(json, pos + 1);
+				continue;
+			}
+			expect(json, pos, '}');
+			checkEnd(json, pos + 1);
+			return found;
+		}
+	}
+
+	/**
+	 * Get the value of a top level field as string. Strings are unescaped, other primitive values
+	 * are returned as they appear in the text.
+	 * @param json the JSON object text
+	 * @param name the field name
+	 * @return the value, or null if the field is not present or its value is null
+	 * @throws IllegalArgumentException if the text is not a valid JSON object or the value is an object or array
+	 */
+	public static String getTopLevelString(String json, String name) {
+		int[] span = findTopLevelValue(json, name);
+		if (null == span) {
+			return null;
+		}
+		char first = json.charAt(span[0]);
+		if (first == '"') {
+			return unescape(json, span[0] + 1, span[1] - 1);
+		}
+		if (first == '{' || first == '[') {
+			throw new IllegalArgumentException("value of field " + name + " is not a primitive");
+		}
+		String value = json.substring(span[0], span[1]);
+		return value.equals("null") ? null : value;
+	}
+
+	/**
+	 * Set a top level field to a string value. An existing value is replaced,
+	 * otherwise the field is added as first field of the object.
+	 * @param json the JSON object text
+	 * @param name the field name
+	 * @param value the new value
+	 * @return the modified JSON text
+	 * @throws IllegalArgumentException if the text is not a valid JSON object
+	 */
+	public static String setTopLevelString(String json, String name, String value) {
+		String quotedValue = quote(value);
+		int[] span = findTopLevelValue(json, name);
+		if (null != span) {
+			return new StringBuilder(json.length() + quotedValue.length())
+					.append(json, 0, span[0])
+					.append(quotedValue)
+					.append(json, span[1], json.length())
+					.toString();
+		}
+
+		// insert as first field, followed by a comma if the object is not empty
+		int open = json.indexOf('{');
+		int next = skipWhitespace(json, open + 1);
+		boolean empty = json.charAt(next) == '}';
+		return new StringBuilder(json.length() + name.length() + quotedValue.length() + 4)
+				.append(json, 0, open + 1)
+				.append(quote(name))
+				.append(':')
+				.append(quotedValue)
+				.append(empty ? "" : ",")
+				.append(json, open + 1, json.length())
+				.toString();
+	}
+
+	/**
+	 * Quote and escape a string as JSON string literal
+	 */
+	public static String quote(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"': sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n"); break;
+			case '\r': sb.append("\\r"); break;
+			case '\t': sb.append("\\t"); break;
+			case '\b': sb.append("\\b"); break;
+			case '\f': sb.append("\\f"); break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+
+	// helper methods --------------------------------------------------------------------------------
+
+	private static void expect(String json, int pos, char c) {
+		if (pos >= json.length() || json.charAt(pos) != c) {
+			throw new IllegalArgumentException("expected '" + c + "' at position " + pos);
+		}
+	}
+
+	// only whitespace may follow the object
+	private static void checkEnd(String json, int pos) {
+		if (skipWhitespace(json, pos) != json.length()) {
+			throw new IllegalArgumentException("unexpected content after JSON object at position " + pos);
+		}
+	}
+
+	private static int skipWhitespace(String json, int pos) {
+		while (pos < json.length()) {
+			char c = json.charAt(pos);
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+				break;
+			}
+			pos++;
+		}
+		return pos;
+	}
+
+	// skip the string starting with the quote at pos, returns the position after the closing quote
+	private static int skipString(String json, int pos) {
+		pos++;
+		while (pos < json.length()) {
+			char c = json.charAt(pos);
+			if (c == '\\') {
+				pos += 2;
+			} else if (c == '"') {
+				return pos + 1;
+			} else {
+				pos++;
+			}
+		}
+		throw new IllegalArgumentException("unterminated string");
+	}
+
+	// skip the value starting at pos, returns the position after the value
+	private static int skipValue(String json, int pos) {
+		if (pos >= json.length()) {
+			throw new IllegalArgumentException("missing value");
+		}
+		char c = json.charAt(pos);
+		if (c == '"') {
+			return skipString(json, pos);
+		}
+		if (c == '{' || c == '[') {
+			// skip nested objects and arrays by counting brackets outside of strings
+			int depth = 0;
+			while (pos < json.length()) {
+				c = json.charAt(pos);
+				if (c == '"') {
+					pos = skipString(json, pos);
+					continue;
+				}
+				if (c == '{' || c == '[') {
+					depth++;
+				} else if (c == '}' || c == ']') {
+					depth--;
+					if (depth == 0) {
+						return pos + 1;
+					}
+				}
+				pos++;
+			}
+			throw new IllegalArgumentException("unterminated object or array");
+		}
+		// number, true, false or null
+		int start = pos;
+		while (pos < json.length()) {
+			c = json.charAt(pos);
+			if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+				break;
+			}
+			pos++;
+		}
+		String literal = json.substring(start, pos);
+		if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null") && !isNumber(literal)) {
+			throw new IllegalArgumentException("invalid value at position " + start);
+		}
+		return pos;
+	}
+
+	private static boolean isNumber(String literal) {
+		if (literal.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < literal.length(); i++) {
+			char c = literal.charAt(i);
+			if (!((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// compare the key text between start and end with the name, escaped keys are unescaped first
+	private static boolean keyEquals(String json, int start, int end, String name) {
+		if (hasEscape(json, start, end)) {
+			return decode(json, start, end).equals(name);
+		}
+		return (end - start == name.length()) && json.regionMatches(start, name, 0, name.length());
+	}
+
+	// true if the text between start and end contains a backslash
+	private static boolean hasEscape(String json, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (json.charAt(i) == '\\') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String unescape(String json, int start, int end) {
+		if (!hasEscape(json, start, end)) {
+			return json.substring(start, end);
+		}
+		return decode(json, start, end);
+	}
+
+	// replace the escape sequences of the text between start and end
+	private static String decode(String json, int start, int end) {
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			char c = json.charAt(i);
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			char e = json.charAt(++i);
+			switch (e) {
+			case 'n': sb.append('\n'); break;
+			case 'r': sb.append('\r'); break;
+			case 't': sb.append('\t'); break;
+			case 'b': sb.append('\b'); break;
+			case 'f': sb.append('\f'); break;
+			case 'u':
+				sb.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+				i += 4;
+				break;
+			default: sb.append(e);
+			}
+		}
+		return sb.toString();
+	}
+
+}
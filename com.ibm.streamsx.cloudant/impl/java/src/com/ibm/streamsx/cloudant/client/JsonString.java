@@ -14,6 +14,8 @@ import com.google.gson.JsonObject;
 /**
  * Implements helper methods to extract and set properties on a String containing JSON data,
  * and convert back and forth between string and JsonObject 
+ * Top level string properties are read and set directly on the text with the JsonScanner,
+ * without parsing the whole document.
  * Uuses Gson to perform conversions to/from string representation
  */
 public class JsonString {
@@ -54,6 +56,14 @@ public class JsonString {
 	}
 	
 	public String getTopLevelStringProperty(String name) {
+		// scan the text, unless the object was parsed already
+		if (data == null) {
+			try {
+				return JsonScanner.getTopLevelString(str, name);
+			} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+				// not strict JSON, let Gson handle it
+			}
+		}
 		convertToObject();
 		JsonElement e = data.get(name);
 		if (null != e) return e.getAsString();
@@ -61,6 +71,15 @@ public class JsonString {
 	}
 
 	public void setTopLevelStringProperty(String name, String value) {
+		// splice the value into the text, unless the object was parsed already
+		if (data == null) {
+			try {
+				str = JsonScanner.setTopLevelString(str, name, value);
+				return;
+			} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+				// not strict JSON, let Gson handle it
+			}
+		}
 		convertToObject();
 		data.addProperty(name, value);
 		objectModified = true;
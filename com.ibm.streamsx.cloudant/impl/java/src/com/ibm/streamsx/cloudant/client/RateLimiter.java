@@ -0,0 +1,86 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+/**
+ * Token bucket limiting the rate of requests.
+ * Tokens are added continuously at the configured rate. The bucket holds at most the tokens of 
+ * 100 milliseconds, so the requests are spread evenly instead of being sent in bursts at the start of each second.
+ * A caller may take more tokens than available, e.g. for a bulk request. The bucket goes into debt then, 
+ * and the caller and all later callers wait until the debt is paid back.
+ * The limiter is thread safe.
+ */
+public class RateLimiter {
+
+	// the fraction of a second the bucket can hold tokens for
+	private static final double BURST_SECONDS = 0.1;
+
+	// tokens per second and per millisecond
+	private final double rate;
+	private final double ratePerMillis;
+
+	// the max number of tokens in the bucket
+	private final double capacity;
+
+	// the current number of tokens, negative if in debt
+	private double tokens;
+
+	// the time the tokens were last added
+	private long lastRefill;
+
+	/**
+	 * create the limiter with a full bucket
+	 * @param rate the max number of tokens per second
+	 */
+	public RateLimiter(double rate) {
+		super();
+		this.rate = rate;
+		this.ratePerMillis = rate / 1000.0;
+		this.capacity = Math.max(1.0, rate * BURST_SECONDS);
+		this.tokens = capacity;
+		this.lastRefill = System.currentTimeMillis();
+	}
+
+	/**
+	 * take tokens from the bucket, wait until they are available
+	 * @param permits the number of tokens needed
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void acquire(int permits) throws InterruptedException {
+		long wait = reserve(permits, System.currentTimeMillis());
+		if (wait > 0) {
+			Thread.sleep(wait);
+		}
+	}
+
+	/**
+	 * take tokens from the bucket without waiting
+	 * @param permits the number of tokens needed
+	 * @param now the current time in milliseconds
+	 * @return the time in milliseconds the caller has to wait before sending the request
+	 */
+	synchronized long reserve(int permits, long now) {
+		if (now > lastRefill) {
+			tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerMillis);
+			lastRefill = now;
+		}
+		tokens -= permits;
+		if (tokens >= 0) {
+			return 0;
+		}
+		return (long) Math.ceil(-tokens / ratePerMillis);
+	}
+
+	/**
+	 * @return the max number of tokens per second
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+}
@@ -74,6 +74,19 @@ public class ReaderResult {
 		ErrorMessage = errorMessage;
 	}
 
+	/**
+	 * reset the result, so the instance can be reused for the next change
+	 */
+	public void clear() {
+		status = Status.UNKNOWN;
+		id = null;
+		doc = null;
+		rev = null;
+		seq = null;
+		deleted = false;
+		ErrorMessage = "";
+	}
+
 	public boolean hasChange() {
 		if (status == Status.OK) return true;
 		else return false;
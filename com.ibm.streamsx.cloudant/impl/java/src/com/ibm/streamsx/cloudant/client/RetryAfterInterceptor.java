@@ -0,0 +1,67 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.net.HttpURLConnection;
+
+import com.cloudant.http.HttpConnectionInterceptorContext;
+import com.cloudant.http.HttpConnectionResponseInterceptor;
+
+/**
+ * Remembers the value of the Retry-After header of the last response on the current thread.
+ * The Cloudant client does not pass response headers to the caller when it throws 
+ * an exception for a failed request, so the retry handling reads the value from here.
+ */
+public class RetryAfterInterceptor implements HttpConnectionResponseInterceptor {
+
+	// retry delay in milliseconds of the last response on this thread, 0 if not present
+	private final ThreadLocal<Long> retryAfter = new ThreadLocal<Long>();
+
+	@Override
+	public HttpConnectionInterceptorContext interceptResponse(HttpConnectionInterceptorContext context) {
+		long delay = 0;
+		try {
+			HttpURLConnection connection = context.connection.getConnection();
+			int status = connection.getResponseCode();
+			if (status == 429 || status == 503) {
+				delay = parseRetryAfter(connection.getHeaderField("Retry-After"));
+			}
+		} catch (Exception e) {
+			// no header available
+		}
+		retryAfter.set(delay);
+		return context;
+	}
+
+	/**
+	 * get and clear the delay of the last response on this thread
+	 * @return the delay requested by the server in milliseconds, 0 if not present
+	 */
+	public long getRetryAfter() {
+		Long delay = retryAfter.get();
+		retryAfter.remove();
+		return (null == delay) ? 0 : delay;
+	}
+
+	/**
+	 * parse the Retry-After value given in seconds, the HTTP date format is not supported 
+	 * @param value the header value
+	 * @return the value in milliseconds, 0 if not present or invalid
+	 */
+	public static long parseRetryAfter(String value) {
+		if (null == value) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Long.parseLong(value.trim()) * 1000);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides if and when a failed request is retried.
+ * The delay grows exponentially with each retry, up to a maximum, and is randomized
+ * by up to 50 percent, so that concurrent clients do not retry at the same time.
+ * A delay requested by the server with the Retry-After header takes precedence.
+ * No retry is done if the max number of retries is reached, or if the retry would
+ * end after the deadline.
+ */
+public class RetryPolicy {
+
+	// max number of retries after the first attempt
+	private final int maxRetries;
+
+	// delay before the first retry in milliseconds
+	private final long initialDelay;
+
+	// upper bound of the computed delay in milliseconds
+	private final long maxDelay;
+
+	// max time in milliseconds from the first attempt until the last retry starts
+	private final long deadline;
+
+	public RetryPolicy(int maxRetries, long initialDelay, long maxDelay, long deadline) {
+		super();
+		this.maxRetries = maxRetries;
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * create the policy from the retry settings in the configuration 
+	 */
+	public static RetryPolicy fromConfiguration(Configuration cfg) {
+		return new RetryPolicy(cfg.getMaxRetries(), cfg.getRetryInitialDelay(), cfg.getRetryMaxDelay(), cfg.getRetryDeadline());
+	}
+
+	/**
+	 * Compute the delay before the next retry.
+	 * @param category the category of the error
+	 * @param idempotent false if the request may have been executed although it failed, e.g. creating a document without id. 
+	 * Such requests are only retried if the server rejected them because of the rate limit
+	 * @param retry the number of the retry, starting with 1
+	 * @param startTime the time of the first attempt, in milliseconds
+	 * @param retryAfter the delay requested by the server in milliseconds, or 0 if not present
+	 * @return the delay in milliseconds, or -1 if the request shall not be retried
+	 */
+	public long getRetryDelay(ErrorCategory category, boolean idempotent, int retry, long startTime, long retryAfter) {
+		if (!category.isTransient() || retry > maxRetries) {
+			return -1;
+		}
+		if (!idempotent && category != ErrorCategory.RATELIMITED) {
+			return -1;
+		}
+
+		long delay = retryAfter;
+		if (delay <= 0) {
+			// exponential backoff with jitter, avoid overflow for large retry counts
+			long backoff = maxDelay;
+			if (retry < 31) {
+				backoff = Math.min(maxDelay, initialDelay << (retry - 1));
+			}
+			delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+		}
+
+		if (System.currentTimeMillis() + delay - startTime > deadline) {
+			return -1;
+		}
+		return delay;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+}
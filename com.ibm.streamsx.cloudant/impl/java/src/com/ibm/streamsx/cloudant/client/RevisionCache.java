@@ -0,0 +1,71 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache holding the latest known revision for document ids.
+ * If the cache is full, the least recently used entry is removed.
+ * The cache is thread safe.
+ */
+public class RevisionCache {
+
+	// the id to rev mapping in access order
+	private final LinkedHashMap<String, String> revisions;
+
+	/**
+	 * construct the cache
+	 * @param maxSize the max number of entries
+	 */
+	public RevisionCache(final int maxSize) {
+		super();
+		revisions = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @param id the document id
+	 * @return the cached revision or null if the id is not in the cache
+	 */
+	public synchronized String get(String id) {
+		return revisions.get(id);
+	}
+
+	/**
+	 * remember the revision of a document, ignored if id or revision is null
+	 * @param id the document id
+	 * @param revision the latest revision of the document
+	 */
+	public synchronized void put(String id, String revision) {
+		if (null == id || null == revision) {
+			return;
+		}
+		revisions.put(id, revision);
+	}
+
+	/**
+	 * remove the entry, e.g. if the revision is outdated
+	 * @param id the document id
+	 */
+	public synchronized void remove(String id) {
+		revisions.remove(id);
+	}
+
+	public synchronized int size() {
+		return revisions.size();
+	}
+
+}
@@ -0,0 +1,58 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one call per key at a time. Threads that request a key while a call for the key is running
+ * do not start their own call, they wait for the running call and get its result.
+ * A call that is started after the running call completed is executed again, results are not cached.
+ * The result is shared by all waiting threads, so it must not be modified.
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+	// the running calls
+	private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<K, CompletableFuture<V>>();
+
+	/**
+	 * run the call, or wait for the running call with the same key
+	 * @param key the key
+	 * @param call the call, executed in the current thread if no call for the key is running
+	 * @return the result of the call
+	 * @throws RuntimeException thrown by the call, in all waiting threads
+	 */
+	public V execute(K key, Supplier<V> call) {
+		CompletableFuture<V> future = new CompletableFuture<V>();
+		CompletableFuture<V> running = calls.putIfAbsent(key, future);
+		if (null != running) {
+			try {
+				return running.join();
+			} catch (CompletionException e) {
+				throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+			}
+		}
+		try {
+			V result = call.get();
+			future.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			calls.remove(key, future);
+		}
+	}
+
+}
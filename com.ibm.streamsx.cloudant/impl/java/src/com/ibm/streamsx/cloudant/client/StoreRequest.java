@@ -0,0 +1,101 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * This class holds the input data for a single document store operation.
+ * It is used to pass multiple documents to a bulk store operation.
+ * Alternatively it holds an attachment to store for a document
+ *
+ */
+public class StoreRequest {
+
+	// the JSON document to store
+	private String document = null;
+
+	// optional id and revision, overwriting the values in the document
+	private String id = null;
+	private String revision = null;
+	
+	// the attachment to store instead of a document, the data supplier must return a new stream on each call
+	private String attachmentName = null;
+	private String contentType = null;
+	private Supplier<InputStream> attachmentData = null;
+	private long attachmentLength = 0;
+	
+	// the UTF-8 size of the document, computed on first use
+	private long documentSize = -1;
+
+	public StoreRequest(String document, String id, String revision) {
+		super();
+		this.document = document;
+		this.id = id;
+		this.revision = revision;
+	}
+
+	public StoreRequest(String document) {
+		this(document, null, null);
+	}
+
+	public StoreRequest(String id, String revision, String attachmentName, String contentType, Supplier<InputStream> attachmentData, long attachmentLength) {
+		this(null, id, revision);
+		this.attachmentName = attachmentName;
+		this.contentType = contentType;
+		this.attachmentData = attachmentData;
+		this.attachmentLength = attachmentLength;
+	}
+
+	/**
+	 * @return true if the request stores an attachment instead of a document
+	 */
+	public boolean isAttachment() {
+		return null != attachmentData;
+	}
+
+	public String getDocument() {
+		return document;
+	}
+
+	/**
+	 * @return the size of the document in UTF-8 bytes, 0 for an attachment
+	 */
+	public long getDocumentSize() {
+		if (documentSize < 0) {
+			documentSize = (null == document) ? 0 : TransferStatistics.utf8Length(document);
+		}
+		return documentSize;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getRevision() {
+		return revision;
+	}
+
+	public String getAttachmentName() {
+		return attachmentName;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public Supplier<InputStream> getAttachmentData() {
+		return attachmentData;
+	}
+
+	public long getAttachmentLength() {
+		return attachmentLength;
+	}
+
+}
@@ -9,7 +9,8 @@ package com.ibm.streamsx.cloudant.client;
 
 /**
  * This class represents the result of a document store operation 
- * on the Cloudant database. It holds error indications and status
+ * on the Cloudant database. It holds error indications and status,
+ * the id and new revision of the stored document and the HTTP status code
  *
  */
 public class StoreResult {
@@ -32,6 +33,13 @@ public class StoreResult {
 
 	// the error message, might be null or empty
 	private String errorMessage = "";
+	
+	// id and new revision of the stored document, null if not known
+	private String id = null;
+	private String revision = null;
+	
+	// HTTP status code returned by the database for the document, 0 if no response was received
+	private int httpStatusCode = 0;
 
 	public StoreResult(Status status,String errorMessage) {
 		super();
@@ -68,5 +76,29 @@ public class StoreResult {
 	public void setErrorMessage(String errorMessage) {
 		this.errorMessage = errorMessage;
 	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getRevision() {
+		return revision;
+	}
+
+	public void setRevision(String revision) {
+		this.revision = revision;
+	}
+
+	public int getHttpStatusCode() {
+		return httpStatusCode;
+	}
+
+	public void setHttpStatusCode(int httpStatusCode) {
+		this.httpStatusCode = httpStatusCode;
+	}
 	
 }
@@ -0,0 +1,148 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Counts the bytes of request and response bodies, both as transferred on the wire (compressed)
+ * and as logical bytes (uncompressed). Provides the gzip encoding and decoding of the bodies.
+ * The counters are thread safe.
+ */
+public class TransferStatistics {
+
+	/** the content encoding used for compressed bodies */
+	public static final String GZIP = "gzip";
+
+	private final AtomicLong sentBytes = new AtomicLong();
+	private final AtomicLong sentWireBytes = new AtomicLong();
+	private final AtomicLong receivedBytes = new AtomicLong();
+	private final AtomicLong receivedWireBytes = new AtomicLong();
+
+	/**
+	 * Counts the bytes read from the wrapped stream
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		private final AtomicLong counter;
+
+		CountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				counter.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				counter.addAndGet(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			counter.addAndGet(skipped);
+			return skipped;
+		}
+	}
+
+	/**
+	 * Compress a request body and count its size
+	 * @param body the uncompressed body
+	 * @return the gzip compressed body
+	 */
+	public byte[] compress(byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(body);
+		gzip.close();
+		byte[] compressed = out.toByteArray();
+		countSent(body.length, compressed.length);
+		return compressed;
+	}
+
+	/**
+	 * Count a request body
+	 * @param bytes the uncompressed size of the body
+	 * @param wireBytes the size of the body as sent
+	 */
+	public void countSent(long bytes, long wireBytes) {
+		sentBytes.addAndGet(bytes);
+		sentWireBytes.addAndGet(wireBytes);
+	}
+
+	/**
+	 * Wrap a response body stream, so that it is decoded if compressed and its bytes are counted while it is read
+	 * @param in the body as received
+	 * @param contentEncoding the value of the Content-Encoding header, might be null
+	 * @return the stream returning the uncompressed body
+	 */
+	public InputStream decode(InputStream in, String contentEncoding) throws IOException {
+		InputStream wire = new CountingInputStream(in, receivedWireBytes);
+		if (GZIP.equalsIgnoreCase(contentEncoding)) {
+			return new CountingInputStream(new GZIPInputStream(wire), receivedBytes);
+		}
+		return new CountingInputStream(wire, receivedBytes);
+	}
+
+	/**
+	 * Get the size of a string in UTF-8, without encoding it
+	 * @param document the string
+	 * @return the number of bytes
+	 */
+	public static long utf8Length(String document) {
+		long length = 0;
+		for (int i = 0; i < document.length(); i++) {
+			char c = document.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < document.length() && Character.isLowSurrogate(document.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	public long getSentBytes() {
+		return sentBytes.get();
+	}
+
+	public long getSentWireBytes() {
+		return sentWireBytes.get();
+	}
+
+	public long getReceivedBytes() {
+		return receivedBytes.get();
+	}
+
+	public long getReceivedWireBytes() {
+		return receivedWireBytes.get();
+	}
+
+}
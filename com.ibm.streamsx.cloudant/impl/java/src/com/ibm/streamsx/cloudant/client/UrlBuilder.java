@@ -14,6 +14,9 @@
 
 package com.ibm.streamsx.cloudant.client;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
 /**
  * Created by mike on 21/08/2016.
  */
@@ -23,13 +26,81 @@ public class UrlBuilder {
         return String.format("%s%s", ensureEndsWith(instanceUrl, "/"), databaseName);
     }
 
+    public static String documentUrl(String databaseUrl, String documentId) {
+        return String.format("%s%s", ensureEndsWith(databaseUrl, "/"), encodeDocumentId(documentId));
+    }
+
+    public static String documentUrl(String databaseUrl, String documentId, String revision) {
+        if (null == revision) {
+            return documentUrl(databaseUrl, documentId);
+        }
+        try {
+            return String.format("%s?rev=%s", documentUrl(databaseUrl, documentId), URLEncoder.encode(revision, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String attachmentUrl(String databaseUrl, String documentId, String attachmentName, String revision) {
+        try {
+            String url = String.format("%s/%s", documentUrl(databaseUrl, documentId), URLEncoder.encode(attachmentName, "UTF-8").replace("+", "%20"));
+            if (null != revision) {
+                url = String.format("%s?rev=%s", url, URLEncoder.encode(revision, "UTF-8"));
+            }
+            return url;
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * the _all_docs URL for a page of a key range, the start key is included and the end key is excluded
+     * startKey and endKey might be null for an open range, skip is ignored if 0 and limit if negative
+     */
+    public static String allDocs(String databaseUrl, String startKey, String endKey, long skip, long limit, boolean includeDocs) {
+        String url = String.format("%s_all_docs?inclusive_end=false", ensureEndsWith(databaseUrl, "/"));
+        if (includeDocs) {
+            url = String.format("%s&include_docs=true", url);
+        }
+        if (null != startKey) {
+            url = String.format("%s&startkey=%s", url, encodeParameter(JsonScanner.quote(startKey)));
+        }
+        if (null != endKey) {
+            url = String.format("%s&endkey=%s", url, encodeParameter(JsonScanner.quote(endKey)));
+        }
+        if (skip > 0) {
+            url = String.format("%s&skip=%d", url, skip);
+        }
+        if (limit >= 0) {
+            url = String.format("%s&limit=%d", url, limit);
+        }
+        return url;
+    }
+
+    public static String encodeDocumentId(String documentId) {
+        // the slash of design document ids must not be encoded
+        String prefix = "";
+        if (documentId.startsWith("_design/")) {
+            prefix = "_design/";
+            documentId = documentId.substring(prefix.length());
+        }
+        try {
+            return prefix + URLEncoder.encode(documentId, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static String changes(String instanceUrl, String databaseName, String feed, String seq,
                            long timeout, long limit, boolean includeChanges, long heartbeat, long seqInterval) {
 
         String databaseUrl = databaseUrl(instanceUrl, databaseName);
 
         String url = String.format("%s/_changes?feed=%s&since=%s",
-                databaseUrl, feed, seq);
+                databaseUrl, feed, encodeParameter(seq));
         if (includeChanges) {
             url = String.format("%s&include_docs=true", url);
         }
@@ -49,6 +120,16 @@ public class UrlBuilder {
         return url;
     }
 
+    // encode a query parameter value, sequence values are opaque strings
+    private static String encodeParameter(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static String ensureEndsWith(String base, String suffix) {
         if (base.endsWith(suffix)) {
             return base;
@@ -0,0 +1,106 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.util;
+
+/**
+ * Adapts the size, byte limit and flush interval of bulk write batches to the observed request latency.
+ * The batch size grows by one while requests complete well below the target latency, and shrinks by
+ * a factor when the target is exceeded, when the database rejects requests because of rate limiting (429),
+ * or because the request is too large (413). A 413 response also lowers the byte limit below the
+ * size of the rejected request. The flush interval is scaled with the batch size, because waiting
+ * for more documents is useless if the batch is kept small.
+ * The configured limits are the upper bounds, the controller never exceeds them.
+ * The controller is thread safe.
+ */
+public class AdaptiveBatchController {
+
+	// a request faster than this fraction of the target allows to grow the batch
+	private static final double GROW_THRESHOLD = 0.5;
+
+	// factor applied to the batch size if the target is exceeded or the database is overloaded
+	private static final double SHRINK_FACTOR = 0.5;
+
+	// the flush interval is never set below this fraction of the configured interval
+	private static final double MIN_INTERVAL_FRACTION = 0.1;
+
+	// the configured upper limits
+	private final int maxSize;
+	private final long maxBytes;
+	private final long maxInterval;
+
+	// the target latency of one request in milliseconds
+	private final long targetLatency;
+
+	// the current limits
+	private int size;
+	private long bytes;
+
+	/**
+	 * construct the controller, starting with the max batch size
+	 * @param maxSize the max number of documents in a batch
+	 * @param maxBytes the max UTF-8 size of the documents in a batch
+	 * @param maxInterval the max time in milliseconds a document waits in a batch
+	 * @param targetLatency the target latency of a bulk request in milliseconds
+	 */
+	public AdaptiveBatchController(int maxSize, long maxBytes, long maxInterval, long targetLatency) {
+		super();
+		this.maxSize = maxSize;
+		this.maxBytes = maxBytes;
+		this.maxInterval = maxInterval;
+		this.targetLatency = targetLatency;
+		this.size = maxSize;
+		this.bytes = maxBytes;
+	}
+
+	/**
+	 * adapt the limits to the outcome of a bulk request
+	 * @param documents the number of documents sent
+	 * @param requestBytes the UTF-8 size of the documents sent
+	 * @param latency the time in milliseconds until the request completed, including retries
+	 * @param httpStatusCode the HTTP status code of the request, 0 if no response was received
+	 */
+	public synchronized void update(int documents, long requestBytes, long latency, int httpStatusCode) {
+		if (httpStatusCode == 413) {
+			// request too large, stay below the rejected size from now on
+			bytes = Math.max(1, Math.min(bytes, (long) (requestBytes * SHRINK_FACTOR)));
+			shrink(documents);
+		} else if (httpStatusCode == 429 || latency > targetLatency) {
+			shrink(documents);
+		} else if (latency < targetLatency * GROW_THRESHOLD && documents >= size) {
+			// only full batches show that a larger batch would be used
+			size = Math.min(maxSize, size + 1);
+		}
+	}
+
+	private void shrink(int documents) {
+		size = Math.max(1, (int) (Math.min(size, documents) * SHRINK_FACTOR));
+	}
+
+	/**
+	 * @return the current max number of documents in a batch
+	 */
+	public synchronized int getBatchSize() {
+		return size;
+	}
+
+	/**
+	 * @return the current max number of document bytes in a batch
+	 */
+	public synchronized long getBatchMaxBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the current max time in milliseconds a document waits in a batch
+	 */
+	public synchronized long getFlushInterval() {
+		double fraction = Math.max(MIN_INTERVAL_FRACTION, (double) size / maxSize);
+		return (long) (maxInterval * fraction);
+	}
+
+}
@@ -0,0 +1,237 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs requests asynchronously on an executor and keeps at most a fixed number of them in flight.
+ * The results are handed to the result handler in the order the requests were submitted,
+ * or optionally in the order the requests complete.
+ * If the window is full, submit() blocks until a request has completed, which applies
+ * back-pressure to the calling thread. In ordered mode results are handled as soon as all older requests are
+ * completed, either on the submitting thread or on the executor thread that completed the request.
+ * @param <T> the type of the request result
+ * @param <C> the type of the context that is passed along with the result, e.g. the output tuples
+ */
+public class InFlightWindow<T, C> {
+
+	/**
+	 * Receives the results of the requests
+	 */
+	public interface ResultHandler<T, C> {
+		void handleResult(T result, C context) throws Exception;
+	}
+
+	// a request in flight and its context
+	private static class Entry<T, C> {
+		final CompletableFuture<T> future;
+		final C context;
+
+		Entry(CompletableFuture<T> future, C context) {
+			this.future = future;
+			this.context = context;
+		}
+	}
+
+	// the default executor running the requests, might be null if each request is submitted with its executor
+	private final ExecutorService executor;
+
+	// max number of requests in flight
+	private final int maxInFlight;
+	
+	// hand over the results in submission order if true, in completion order otherwise
+	private final boolean ordered;
+
+	// gets the results
+	private final ResultHandler<T, C> handler;
+
+	// the requests in flight, oldest first
+	private final Deque<Entry<T, C>> inFlight = new ArrayDeque<Entry<T, C>>();
+	
+	// error thrown by the handler on an executor thread, reported to the next caller
+	private Exception handlerError = null;
+
+	/**
+	 * construct the window.
+	 * @param executor the default executor used to run the requests, stopped on shutdown. Might be null if an executor is passed to each submit
+	 * @param maxInFlight max number of requests running at the same time
+	 * @param handler the handler receiving the results in submission order
+	 */
+	public InFlightWindow(ExecutorService executor, int maxInFlight, ResultHandler<T, C> handler) {
+		this(executor, maxInFlight, handler, true);
+	}
+
+	/**
+	 * construct the window.
+	 * @param executor the default executor used to run the requests, stopped on shutdown. Might be null if an executor is passed to each submit
+	 * @param maxInFlight max number of requests running at the same time
+	 * @param handler the handler receiving the results
+	 * @param ordered if true the results are handed over in submission order, otherwise in completion order
+	 */
+	public InFlightWindow(ExecutorService executor, int maxInFlight, ResultHandler<T, C> handler, boolean ordered) {
+		super();
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.handler = handler;
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Start a request. Blocks while the window is full. Results of completed requests
+	 * are passed to the handler before this method returns.
+	 * @param request the request to run
+	 * @param context the context passed to the handler together with the result
+	 */
+	public synchronized void submit(final Callable<T> request, C context) throws Exception {
+		submit(request, context, executor);
+	}
+
+	/**
+	 * Start a request on the given executor. Blocks while the window is full. The results are still handed
+	 * to the handler in submission order, regardless of the executor that ran the request.
+	 * @param request the request to run
+	 * @param context the context passed to the handler together with the result
+	 * @param requestExecutor the executor used to run this request
+	 */
+	public synchronized void submit(final Callable<T> request, C context, Executor requestExecutor) throws Exception {
+		while (inFlight.size() >= maxInFlight) {
+			waitForCompletion();
+		}
+		CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+			try {
+				return request.call();
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, requestExecutor);
+		inFlight.addLast(new Entry<T, C>(future, context));
+		
+		// hand the result over as soon as the request and all older ones are done
+		future.whenComplete((result, error) -> handleCompletedAsync());
+		handleCompleted();
+	}
+
+	/**
+	 * Pass the results of all requests that are completed to the handler, without blocking.
+	 * In ordered mode it stops at the first request still running, to keep the order.
+	 */
+	public synchronized void handleCompleted() throws Exception {
+		checkHandlerError();
+		completeDone();
+	}
+
+	/**
+	 * Wait until all requests are completed and their results are handled.
+	 */
+	public synchronized void drain() throws Exception {
+		while (!inFlight.isEmpty()) {
+			waitForCompletion();
+		}
+		checkHandlerError();
+	}
+
+	/**
+	 * @return the number of requests in flight
+	 */
+	public synchronized int size() {
+		return inFlight.size();
+	}
+
+	/**
+	 * Drain the window and stop the default executor
+	 */
+	public synchronized void shutdown() throws Exception {
+		try {
+			drain();
+		} finally {
+			if (null != executor) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	// called on the executor thread when a request is done
+	private synchronized void handleCompletedAsync() {
+		try {
+			if (null == handlerError) {
+				handleCompleted();
+			}
+		} catch (Exception e) {
+			handlerError = e;
+		} finally {
+			notifyAll();
+		}
+	}
+
+	// handle the requests that are done, or wait for the next completion if none can be handled.
+	// The monitor is released while waiting, so that the executor threads can hand over their results
+	private void waitForCompletion() throws Exception {
+		checkHandlerError();
+		if (!completeDone()) {
+			wait();
+		}
+	}
+	
+	// pass the results of the completed requests to the handler, returns false if there was none
+	private boolean completeDone() throws Exception {
+		boolean completed = false;
+		if (ordered) {
+			while (!inFlight.isEmpty() && inFlight.peekFirst().future.isDone()) {
+				completeEntry(inFlight.removeFirst());
+				completed = true;
+			}
+			return completed;
+		}
+		Iterator<Entry<T, C>> it = inFlight.iterator();
+		while (it.hasNext()) {
+			Entry<T, C> entry = it.next();
+			if (entry.future.isDone()) {
+				it.remove();
+				completeEntry(entry);
+				completed = true;
+			}
+		}
+		return completed;
+	}
+
+	// rethrow an error that occured on an executor thread
+	private void checkHandlerError() throws Exception {
+		if (null != handlerError) {
+			Exception e = handlerError;
+			handlerError = null;
+			throw e;
+		}
+	}
+	
+	// get the result of a completed request and pass it to the handler
+	private void completeEntry(Entry<T, C> entry) throws Exception {
+		T result = null;
+		try {
+			result = entry.future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CompletionException && e.getCause().getCause() instanceof Exception) {
+				throw (Exception) e.getCause().getCause();
+			}
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+		handler.handleResult(result, entry.context);
+	}
+
+}
@@ -70,10 +70,10 @@ public class StreamsHelper {
 	 * @param checker 
 	 * @param attributeParameter
 	 * @param defaultAttribute
-	 * @param attributeType
+	 * @param attributeTypes the allowed types of the attribute
 	 * @param outputPort
 	 */
-	public static void validateOutputAttribute(OperatorContextChecker checker, String attributeParameter, String defaultAttribute, MetaType attributeType, int outputPort) {
+	public static void validateOutputAttribute(OperatorContextChecker checker, String attributeParameter, String defaultAttribute, MetaType[] attributeTypes, int outputPort) {
 		OperatorContext ctx = checker.getOperatorContext();
 		
 		// cannot validate parameter values at compile time, only check for default attribute here
@@ -96,15 +96,15 @@ public class StreamsHelper {
 			}
 			
 			// check correct type of attribute
-			if(!checker.checkAttributeType(attr, attributeType)) {
-				checker.setInvalidContext("SPECIFIED_ATTRIBUTE_WRONG_TYPE, expected: " + attributeType.toString(), new Object[0]);
+			if(!checker.checkAttributeType(attr, attributeTypes)) {
+				checker.setInvalidContext("SPECIFIED_ATTRIBUTE_WRONG_TYPE, expected: " + typeNames(attributeTypes), new Object[0]);
 				return;
 			}
 		}
 	}
 
-	public static void validateOutputAttribute(OperatorContextChecker checker, String attributeParameter, String defaultAttribute, MetaType attributeType) {
-		validateOutputAttribute(checker, attributeParameter, defaultAttribute, attributeType, 0);
+	public static void validateOutputAttribute(OperatorContextChecker checker, String attributeParameter, String defaultAttribute, MetaType... attributeTypes) {
+		validateOutputAttribute(checker, attributeParameter, defaultAttribute, attributeTypes, 0);
 	}
 	
 	/**
@@ -112,10 +112,10 @@ public class StreamsHelper {
 	 * @param checker
 	 * @param attributeParameter
 	 * @param defaultAttribute
-	 * @param attributeType
+	 * @param attributeTypes the allowed types of the attribute
 	 * @param outputPort
 	 */
-	public static void validateOutputAttributeRuntime(OperatorContextChecker checker, String attributeParameter, String defaultAttribute, MetaType attributeType, int outputPort) {
+	public static void validateOutputAttributeRuntime(OperatorContextChecker checker, String attributeParameter, String defaultAttribute, MetaType[] attributeTypes, int outputPort) {
 		OperatorContext ctx = checker.getOperatorContext();
 
 		if(ctx.getParameterNames().contains(attributeParameter)) {
@@ -139,15 +139,27 @@ public class StreamsHelper {
 		    }
             
 			// check correct type of attribute
-			if(!checker.checkAttributeType(attr, attributeType)) {
-				checker.setInvalidContext("SPECIFIED_ATTRIBUTE_WRONG_TYPE, expected: " + attributeType.toString(), new Object[0]);
+			if(!checker.checkAttributeType(attr, attributeTypes)) {
+				checker.setInvalidContext("SPECIFIED_ATTRIBUTE_WRONG_TYPE, expected: " + typeNames(attributeTypes), new Object[0]);
 				return;
 			}
 		}
 	}
 
-	public static void validateOutputAttributeRuntime(OperatorContextChecker checker, String attributeParameter, String defaultAttribute, MetaType attributeType) {
-		validateOutputAttributeRuntime(checker, attributeParameter, defaultAttribute, attributeType, 0);
+	public static void validateOutputAttributeRuntime(OperatorContextChecker checker, String attributeParameter, String defaultAttribute, MetaType... attributeTypes) {
+		validateOutputAttributeRuntime(checker, attributeParameter, defaultAttribute, attributeTypes, 0);
+	}
+	
+	// the names of the types, separated by ' or '
+	private static String typeNames(MetaType[] types) {
+		StringBuilder names = new StringBuilder();
+		for (MetaType type : types) {
+			if (names.length() > 0) {
+				names.append(" or ");
+			}
+			names.append(type.toString());
+		}
+		return names.toString();
 	}
 
 }
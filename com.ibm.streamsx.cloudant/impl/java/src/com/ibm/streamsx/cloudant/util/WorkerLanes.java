@@ -0,0 +1,124 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed number of lanes, each running its tasks sequentially on its own thread.
+ * Tasks are assigned to a lane by the hash of a key, so tasks with the same key are executed
+ * in submission order, while tasks with different keys can run concurrently.
+ * The number of queued and running tasks of each lane is tracked and reported to a listener.
+ */
+public class WorkerLanes {
+
+	/**
+	 * Receives the queue depth of a lane whenever it changes
+	 */
+	public interface DepthListener {
+		void depthChanged(int lane, int depth);
+	}
+
+	// the single threaded executors of the lanes
+	private final ExecutorService[] executors;
+
+	// the number of tasks queued or running in each lane
+	private final AtomicInteger[] depths;
+
+	// gets the queue depth changes, might be null
+	private final DepthListener listener;
+
+	// used to distribute tasks without key
+	private final AtomicInteger nextLane = new AtomicInteger();
+
+	/**
+	 * create the lanes and their threads
+	 * @param lanes the number of lanes
+	 * @param threadFactory the factory creating the lane threads
+	 * @param listener gets the queue depth changes, might be null
+	 */
+	public WorkerLanes(int lanes, ThreadFactory threadFactory, DepthListener listener) {
+		super();
+		this.executors = new ExecutorService[lanes];
+		this.depths = new AtomicInteger[lanes];
+		this.listener = listener;
+		for (int i = 0; i < lanes; i++) {
+			executors[i] = Executors.newSingleThreadExecutor(threadFactory);
+			depths[i] = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * @param key the key of the task, e.g. the document id. Tasks without key are distributed round robin
+	 * @return the lane for the key
+	 */
+	public int getLane(String key) {
+		if (null == key) {
+			return (nextLane.getAndIncrement() & Integer.MAX_VALUE) % executors.length;
+		}
+		return (key.hashCode() & Integer.MAX_VALUE) % executors.length;
+	}
+
+	/**
+	 * @param lane the lane number
+	 * @return an executor that runs the tasks sequentially in the lane
+	 */
+	public Executor getExecutor(final int lane) {
+		return new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				updateDepth(lane, depths[lane].incrementAndGet());
+				executors[lane].execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							command.run();
+						} finally {
+							updateDepth(lane, depths[lane].decrementAndGet());
+						}
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * @param lane the lane number
+	 * @return the number of tasks queued or running in the lane
+	 */
+	public int getDepth(int lane) {
+		return depths[lane].get();
+	}
+
+	/**
+	 * @return the number of lanes
+	 */
+	public int size() {
+		return executors.length;
+	}
+
+	/**
+	 * stop the lane threads after the queued tasks are done
+	 */
+	public void shutdown() {
+		for (ExecutorService executor : executors) {
+			executor.shutdown();
+		}
+	}
+
+	private void updateDepth(int lane, int depth) {
+		if (null != listener) {
+			listener.depthChanged(lane, depth);
+		}
+	}
+
+}
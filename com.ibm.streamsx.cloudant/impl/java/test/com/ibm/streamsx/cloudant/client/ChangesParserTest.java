@@ -0,0 +1,201 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ChangesParserTest {
+
+	private static InputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// returns at most the given number of bytes per read, to split rows across reads
+	private static InputStream slowStream(String text, final int chunk) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, chunk));
+			}
+		};
+	}
+
+	@Test
+	public void parsesContinuousRows() throws IOException {
+		ChangesParser parser = new ChangesParser(stream(
+				"{\"seq\":\"1-g1\",\"id\":\"a\",\"changes\":[{\"rev\":\"1-x\"}]}\n"
+				+ "{\"seq\":\"2-g1\",\"id\":\"b\",\"changes\":[{\"rev\":\"2-y\"},{\"rev\":\"2-z\"}],\"deleted\":true}\n"));
+		ReaderResult result = new ReaderResult();
+
+		assertTrue(parser.next(result, false));
+		assertEquals(ReaderResult.Status.OK, result.getStatus());
+		assertEquals("a", result.getId());
+		assertEquals("1-g1", result.getSeq());
+		assertEquals("1-x", result.getRev());
+		assertFalse(result.isDeleted());
+
+		assertTrue(parser.next(result, false));
+		assertEquals("b", result.getId());
+		assertEquals("2-y", result.getRev());
+		assertTrue(result.isDeleted());
+
+		assertFalse(parser.next(result, false));
+	}
+
+	@Test
+	public void includesDocumentOnlyIfRequested() throws IOException {
+		String row = "{\"seq\":\"1\",\"id\":\"a\",\"doc\":{\"_id\":\"a\",\"text\":\"line\\nbreak } ]\",\"n\":[1,{\"m\":2}]}}\n";
+		ReaderResult result = new ReaderResult();
+
+		ChangesParser parser = new ChangesParser(stream(row));
+		assertTrue(parser.next(result, true));
+		assertEquals("{\"_id\":\"a\",\"text\":\"line\\nbreak } ]\",\"n\":[1,{\"m\":2}]}", result.getDoc());
+
+		parser = new ChangesParser(stream(row));
+		assertTrue(parser.next(result, false));
+		assertNull(result.getDoc());
+	}
+
+	@Test
+	public void unescapesStrings() throws IOException {
+		ChangesParser parser = new ChangesParser(stream("{\"seq\":\"1\",\"id\":\"a\\\"b\\u00e9\\\\c\"}\n"));
+		ReaderResult result = new ReaderResult();
+		assertTrue(parser.next(result, false));
+		assertEquals("a\"bé\\c", result.getId());
+	}
+
+	@Test
+	public void returnsHeartbeatForEmptyLinesAndLastSeq() throws IOException {
+		ChangesParser parser = new ChangesParser(stream("\n\r\n{\"last_seq\":\"5-g1\",\"pending\":0}\n"));
+		ReaderResult result = new ReaderResult();
+		assertTrue(parser.next(result, false));
+		assertEquals(ReaderResult.Status.HEARTBEAT, result.getStatus());
+		assertTrue(parser.next(result, false));
+		assertEquals(ReaderResult.Status.HEARTBEAT, result.getStatus());
+		assertTrue(parser.next(result, false));
+		assertEquals(ReaderResult.Status.HEARTBEAT, result.getStatus());
+		assertNull(result.getId());
+		assertFalse(parser.next(result, false));
+	}
+
+	@Test
+	public void handlesSeparatorsAndMissingFinalLineFeed() throws IOException {
+		ChangesParser parser = new ChangesParser(stream("{\"seq\":\"1\",\"id\":\"a\"},\r\n{\"seq\":\"2\",\"id\":\"b\"}"));
+		ReaderResult result = new ReaderResult();
+		assertTrue(parser.next(result, false));
+		assertEquals("a", result.getId());
+		assertTrue(parser.next(result, false));
+		assertEquals("b", result.getId());
+		assertFalse(parser.next(result, false));
+	}
+
+	@Test
+	public void parsesRowsSplitAcrossReads() throws IOException {
+		StringBuilder feed = new StringBuilder();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			text.append('x');
+		}
+		for (int i = 0; i < 20; i++) {
+			feed.append("{\"seq\":\"").append(i).append("\",\"id\":\"doc").append(i).append("\",\"doc\":{\"text\":\"").append(text).append("\"}}\n");
+		}
+		ChangesParser parser = new ChangesParser(slowStream(feed.toString(), 1000));
+		ReaderResult result = new ReaderResult();
+		for (int i = 0; i < 20; i++) {
+			assertTrue(parser.next(result, true));
+			assertEquals("doc" + i, result.getId());
+			assertEquals(text.length() + 11, result.getDoc().length());
+		}
+		assertFalse(parser.next(result, true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidRow() throws IOException {
+		new ChangesParser(stream("{\"seq\" \"1\"}\n")).next(new ReaderResult(), false);
+	}
+
+	@Test
+	public void parsesNormalFeedPage() throws IOException {
+		ChangesParser parser = ChangesParser.forPage(stream(
+				"{\"results\":[\n{\"seq\":\"1\",\"id\":\"a\",\"changes\":[{\"rev\":\"1-x\"}]},\n"
+				+ "{\"seq\":null,\"id\":\"b\",\"changes\":[{\"rev\":\"1-y\"}]}\n],\n\"last_seq\":\"2-g1\",\"pending\":7}"));
+		assertEquals("2-g1", parser.getLastSeq());
+		assertEquals(7, parser.getPending());
+
+		ReaderResult result = new ReaderResult();
+		assertTrue(parser.next(result, false));
+		assertEquals("a", result.getId());
+		assertEquals("1", result.getSeq());
+		// the last row without sequence value gets last_seq
+		assertTrue(parser.next(result, false));
+		assertEquals("b", result.getId());
+		assertEquals("2-g1", result.getSeq());
+		assertFalse(parser.next(result, false));
+	}
+
+	@Test
+	public void parsesEmptyPage() throws IOException {
+		ChangesParser parser = ChangesParser.forPage(stream("{\"results\":[],\"last_seq\":\"9\",\"pending\":0}"));
+		assertEquals("9", parser.getLastSeq());
+		assertEquals(0, parser.getPending());
+		assertFalse(parser.next(new ReaderResult(), false));
+	}
+
+	@Test
+	public void parsesAllDocsPage() throws IOException {
+		ChangesParser parser = ChangesParser.forPage(stream(
+				"{\"total_rows\":2,\"offset\":0,\"rows\":[\n"
+				+ "{\"id\":\"a\",\"key\":\"a\",\"value\":{\"rev\":\"1-x\"},\"doc\":{\"_id\":\"a\",\"_rev\":\"1-x\"}},\n"
+				+ "{\"id\":\"b\",\"key\":\"b\",\"value\":{\"rev\":\"3-y\"},\"doc\":{\"_id\":\"b\",\"_rev\":\"3-y\"}}\n]}"));
+		assertNull(parser.getLastSeq());
+		assertEquals(-1, parser.getPending());
+
+		ReaderResult result = new ReaderResult();
+		assertTrue(parser.next(result, true));
+		assertEquals("a", result.getId());
+		assertEquals("1-x", result.getRev());
+		assertEquals("{\"_id\":\"a\",\"_rev\":\"1-x\"}", result.getDoc());
+		assertTrue(parser.next(result, true));
+		assertEquals("b", result.getId());
+		assertEquals("3-y", result.getRev());
+		assertNull(result.getSeq());
+		assertFalse(parser.next(result, true));
+	}
+
+	@Test
+	public void parsesAllDocsKeysPage() throws IOException {
+		ChangesParser parser = ChangesParser.forPage(stream(
+				"{\"total_rows\":3,\"rows\":[\n"
+				+ "{\"id\":\"a\",\"key\":\"a\",\"value\":{\"rev\":\"1-x\"},\"doc\":{\"_id\":\"a\",\"_rev\":\"1-x\"}},\n"
+				+ "{\"key\":\"m\",\"error\":\"not_found\"},\n"
+				+ "{\"id\":\"d\",\"key\":\"d\",\"value\":{\"rev\":\"2-y\",\"deleted\":true},\"doc\":null}\n]}"));
+		ReaderResult result = new ReaderResult();
+		assertTrue(parser.next(result, true));
+		assertEquals("a", result.getId());
+		assertEquals("{\"_id\":\"a\",\"_rev\":\"1-x\"}", result.getDoc());
+		// missing documents have no id
+		assertTrue(parser.next(result, true));
+		assertNull(result.getId());
+		// deleted documents have no document
+		assertTrue(parser.next(result, true));
+		assertEquals("d", result.getId());
+		assertNull(result.getDoc());
+		assertFalse(parser.next(result, true));
+	}
+
+}
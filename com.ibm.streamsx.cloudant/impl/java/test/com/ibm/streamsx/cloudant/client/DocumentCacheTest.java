@@ -0,0 +1,135 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class DocumentCacheTest {
+
+	private static final String DOC_A = "{\"_id\":\"a\",\"_rev\":\"1-a\"}";
+	private static final String DOC_B = "{\"_id\":\"b\",\"_rev\":\"1-b\"}";
+	private static final String DOC_C = "{\"_id\":\"c\",\"_rev\":\"1-c\"}";
+
+	@Test
+	public void countsHitsAndMisses() {
+		DocumentCache cache = new DocumentCache(10, 1000, 60000);
+		assertNull(cache.get("a", null));
+		cache.put("a", null, DOC_A);
+		assertEquals(DOC_A, cache.get("a", null));
+		assertEquals(DOC_A, cache.get("a", ""));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void keysByRevision() {
+		DocumentCache cache = new DocumentCache(10, 1000, 60000);
+		cache.put("a", "1-a", DOC_A);
+		assertNull(cache.get("a", null));
+		assertNull(cache.get("a", "2-a"));
+		assertEquals(DOC_A, cache.get("a", "1-a"));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedByCount() {
+		DocumentCache cache = new DocumentCache(2, 1000, 60000);
+		cache.put("a", null, DOC_A);
+		cache.put("b", null, DOC_B);
+		cache.get("a", null);
+		cache.put("c", null, DOC_C);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get("b", null));
+		assertEquals(DOC_A, cache.get("a", null));
+		assertEquals(DOC_C, cache.get("c", null));
+	}
+
+	@Test
+	public void evictsByUtf8Size() {
+		// 2 bytes per character in UTF-8
+		String doc = "{\"x\":\"ääää\"}";
+		long size = doc.length() + 4;
+		DocumentCache cache = new DocumentCache(10, 2 * size, 60000);
+		cache.put("a", null, doc);
+		cache.put("b", null, doc);
+		assertEquals(2, cache.size());
+		cache.put("c", null, doc);
+		assertEquals(2, cache.size());
+		assertNull(cache.get("a", null));
+	}
+
+	@Test
+	public void skipsDocumentsLargerThanLimit() {
+		DocumentCache cache = new DocumentCache(10, DOC_A.length() - 1, 60000);
+		cache.put("a", null, DOC_A);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void expiresLatestVersion() throws InterruptedException {
+		DocumentCache cache = new DocumentCache(10, 1000, 20);
+		cache.put("a", null, DOC_A);
+		cache.put("a", "1-a", DOC_A);
+		Thread.sleep(40);
+		assertNull(cache.get("a", null));
+		assertEquals(1, cache.getEvictions());
+		// documents of a given revision never change
+		assertEquals(DOC_A, cache.get("a", "1-a"));
+	}
+
+	@Test
+	public void invalidatesLatestVersion() {
+		DocumentCache cache = new DocumentCache(10, 1000, 60000);
+		cache.put("a", null, DOC_A);
+		cache.put("a", "1-a", DOC_A);
+		cache.invalidate("a");
+		assertNull(cache.get("a", null));
+		assertEquals(DOC_A, cache.get("a", "1-a"));
+	}
+
+	@Test
+	public void revalidatesExpiredVersion() throws InterruptedException {
+		DocumentCache cache = new DocumentCache(10, 1000, 20, true);
+		cache.put("a", null, DOC_A);
+		Thread.sleep(40);
+		// expired but kept for revalidation, not counted yet
+		assertNull(cache.get("a", null));
+		assertEquals(0, cache.getMisses());
+		assertEquals("1-a", cache.getExpiredRevision("a"));
+		assertEquals(DOC_A, cache.revalidated("a"));
+		assertEquals(1, cache.getHits());
+		assertNull(cache.getExpiredRevision("a"));
+		assertEquals(DOC_A, cache.get("a", null));
+	}
+
+	@Test
+	public void discardsModifiedVersion() throws InterruptedException {
+		DocumentCache cache = new DocumentCache(10, 1000, 20, true);
+		cache.put("a", null, DOC_A);
+		Thread.sleep(40);
+		cache.discardExpired("a");
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(0, cache.size());
+		assertNull(cache.getExpiredRevision("a"));
+	}
+
+	@Test
+	public void revalidatesOnlyWithRevision() throws InterruptedException {
+		DocumentCache cache = new DocumentCache(10, 1000, 20, true);
+		cache.put("a", null, "{\"_id\":\"a\"}");
+		Thread.sleep(40);
+		assertNull(cache.getExpiredRevision("a"));
+		assertNull(cache.get("a", null));
+		assertEquals(1, cache.getMisses());
+	}
+
+}
@@ -0,0 +1,108 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ibm.streamsx.cloudant.client.JsonProjection.ValueType;
+
+public class JsonProjectionTest {
+
+	private static final String DOC = "{\"_id\":\"a\",\"name\":\"Alice\",\"age\":42,\"score\":1.5,\"active\":true,"
+			+ "\"address\":{\"city\":\"Berlin\",\"geo\":{\"lat\":52.5}},\"tags\":[\"x\",\"y\"],\"counts\":[1,2,3],\"nothing\":null}";
+
+	private static JsonProjection projection(String... pathsAndTypes) {
+		String[] paths = new String[pathsAndTypes.length / 2];
+		ValueType[] types = new ValueType[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = pathsAndTypes[2 * i];
+			types[i] = ValueType.valueOf(pathsAndTypes[2 * i + 1]);
+		}
+		return new JsonProjection(Arrays.asList(paths), Arrays.asList(types));
+	}
+
+	private static Object[] extract(JsonProjection projection, String document) throws IOException {
+		return projection.extract(new StringReader(document));
+	}
+
+	@Test
+	public void extractsTypedValues() throws IOException {
+		JsonProjection p = projection("name", "STRING", "age", "LONG", "score", "DOUBLE", "active", "BOOLEAN");
+		assertArrayEquals(new Object[] { "Alice", 42L, 1.5, true }, extract(p, DOC));
+	}
+
+	@Test
+	public void extractsNestedValues() throws IOException {
+		JsonProjection p = projection("address.city", "STRING", "address.geo.lat", "DOUBLE");
+		assertArrayEquals(new Object[] { "Berlin", 52.5 }, extract(p, DOC));
+	}
+
+	@Test
+	public void extractsLists() throws IOException {
+		JsonProjection p = projection("tags", "STRING_LIST", "counts", "LONG_LIST");
+		assertEquals(2, p.size());
+		assertArrayEquals(new Object[] { Arrays.asList("x", "y"), Arrays.asList(1L, 2L, 3L) }, extract(p, DOC));
+		assertArrayEquals(new Object[] { Arrays.asList(1.0, 2.0, 3.0) }, extract(projection("counts", "DOUBLE_LIST"), DOC));
+	}
+
+	@Test
+	public void returnsObjectsAsJsonText() throws IOException {
+		JsonProjection p = projection("address.geo", "STRING", "tags", "STRING");
+		assertArrayEquals(new Object[] { "{\"lat\":52.5}", "[\"x\",\"y\"]" }, extract(p, DOC));
+	}
+
+	@Test
+	public void returnsNullForMissingValues() throws IOException {
+		JsonProjection p = projection("nothing", "STRING", "missing", "LONG", "address.missing", "STRING", "name.first", "STRING");
+		assertArrayEquals(new Object[] { null, null, null, null }, extract(p, DOC));
+	}
+
+	@Test
+	public void returnsNullForNonObjects() throws IOException {
+		JsonProjection p = projection("name", "STRING");
+		assertArrayEquals(new Object[] { null }, extract(p, "[1,2]"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsConversionErrors() throws IOException {
+		extract(projection("name", "LONG"), DOC);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsListTypeForScalar() throws IOException {
+		extract(projection("age", "LONG_LIST"), DOC);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsPrefixPaths() {
+		projection("address", "STRING", "address.city", "STRING");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsDuplicatePaths() {
+		projection("name", "STRING", "name", "STRING");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyPathElements() {
+		projection("address..city", "STRING");
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsInvalidJson() throws IOException {
+		extract(projection("missing", "STRING"), "{\"name\":\"Alice\",");
+	}
+
+}
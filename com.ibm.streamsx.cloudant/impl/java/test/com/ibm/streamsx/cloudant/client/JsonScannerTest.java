@@ -0,0 +1,126 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+public class JsonScannerTest {
+
+	@Test
+	public void getsTopLevelStrings() {
+		String json = "{\"_id\":\"doc1\",\"_rev\":\"1-abc\",\"count\":42,\"flag\":true,\"none\":null}";
+		assertEquals("doc1", JsonScanner.getTopLevelString(json, "_id"));
+		assertEquals("1-abc", JsonScanner.getTopLevelString(json, "_rev"));
+		assertEquals("42", JsonScanner.getTopLevelString(json, "count"));
+		assertEquals("true", JsonScanner.getTopLevelString(json, "flag"));
+		assertNull(JsonScanner.getTopLevelString(json, "none"));
+		assertNull(JsonScanner.getTopLevelString(json, "missing"));
+	}
+
+	@Test
+	public void skipsNestedObjectsAndArrays() {
+		String json = "{\"a\":{\"_id\":\"inner\",\"b\":[{\"_id\":\"x\"},\"}\",\"]\"]},\"list\":[1,[2,{\"_rev\":\"no\"}]],\"_id\":\"outer\"}";
+		assertEquals("outer", JsonScanner.getTopLevelString(json, "_id"));
+		assertNull(JsonScanner.getTopLevelString(json, "_rev"));
+	}
+
+	@Test
+	public void allowsWhitespace() {
+		String json = " \n{ \"_id\" :\t\"doc1\" ,\r\n \"_rev\" : \"2-def\"\n }\n ";
+		assertEquals("doc1", JsonScanner.getTopLevelString(json, "_id"));
+		assertEquals("2-def", JsonScanner.getTopLevelString(json, "_rev"));
+	}
+
+	@Test
+	public void matchesEscapedKeys() {
+		String json = "{\"\\u005fid\":\"doc1\",\"a\\\"b\":\"quote\",\"c\\\\d\":\"backslash\"}";
+		assertEquals("doc1", JsonScanner.getTopLevelString(json, "_id"));
+		assertEquals("quote", JsonScanner.getTopLevelString(json, "a\"b"));
+		assertEquals("backslash", JsonScanner.getTopLevelString(json, "c\\d"));
+	}
+
+	@Test
+	public void unescapesValues() {
+		String json = "{\"_id\":\"a\\\"b\\\\c\\nd\\u00e9\"}";
+		assertEquals("a\"b\\c\nd\u00e9", JsonScanner.getTopLevelString(json, "_id"));
+	}
+
+	@Test
+	public void returnsLastOfDuplicateKeys() {
+		String json = "{\"_id\":\"first\",\"_rev\":\"1-a\",\"_id\":\"second\",\"_rev\":\"2-b\"}";
+		assertEquals("second", JsonScanner.getTopLevelString(json, "_id"));
+		assertEquals("2-b", JsonScanner.getTopLevelString(json, "_rev"));
+		// the same value Gson returns
+		assertEquals("second", new Gson().fromJson(json, JsonObject.class).get("_id").getAsString());
+	}
+
+	@Test
+	public void replacesExistingValue() {
+		String json = "{\"_id\":\"doc1\", \"_rev\" : \"1-abc\",\"data\":{\"_rev\":\"keep\"}}";
+		assertEquals("{\"_id\":\"doc1\", \"_rev\" : \"2-def\",\"data\":{\"_rev\":\"keep\"}}", JsonScanner.setTopLevelString(json, "_rev", "2-def"));
+	}
+
+	@Test
+	public void replacesLastOfDuplicateKeys() {
+		String json = "{\"_id\":\"first\",\"_id\":\"second\"}";
+		String result = JsonScanner.setTopLevelString(json, "_id", "new");
+		assertEquals("{\"_id\":\"first\",\"_id\":\"new\"}", result);
+		assertEquals("new", new Gson().fromJson(result, JsonObject.class).get("_id").getAsString());
+	}
+
+	@Test
+	public void insertsMissingField() {
+		assertEquals("{\"_id\":\"doc1\",\"a\":1}", JsonScanner.setTopLevelString("{\"a\":1}", "_id", "doc1"));
+		assertEquals("{\"_id\":\"doc1\"}", JsonScanner.setTopLevelString("{}", "_id", "doc1"));
+		assertEquals(" {\"_id\":\"doc1\" }", JsonScanner.setTopLevelString(" { }", "_id", "doc1"));
+	}
+
+	@Test
+	public void quotesInsertedValues() {
+		String result = JsonScanner.setTopLevelString("{\"a\":1}", "_id", "x\"y\\z\n\u0001");
+		assertEquals("x\"y\\z\n\u0001", new Gson().fromJson(result, JsonObject.class).get("_id").getAsString());
+		assertEquals("x\"y\\z\n\u0001", JsonScanner.getTopLevelString(result, "_id"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsArray() {
+		JsonScanner.getTopLevelString("[{\"_id\":\"doc1\"}]", "_id");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnquotedKeys() {
+		JsonScanner.getTopLevelString("{_id:\"doc1\"}", "_id");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSingleQuotes() {
+		JsonScanner.setTopLevelString("{'_id':'doc1'}", "_id", "doc2");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnterminatedObject() {
+		JsonScanner.getTopLevelString("{\"_id\":\"doc1\",\"a\":{\"b\":1}", "_id");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTrailingContent() {
+		JsonScanner.getTopLevelString("{\"_id\":\"doc1\"} x", "_id");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNestedValueAsString() {
+		JsonScanner.getTopLevelString("{\"_id\":{\"a\":1}}", "_id");
+	}
+
+}
@@ -0,0 +1,61 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+public class JsonStringTest {
+
+	@Test
+	public void setsFieldsWithoutReformatting() {
+		JsonString json = new JsonString("{ \"a\" : [1, 2],\n \"_rev\":\"1-abc\" }");
+		json.setTopLevelStringProperty("_rev", "2-def");
+		json.setTopLevelStringProperty("_id", "doc1");
+		assertEquals("{\"_id\":\"doc1\", \"a\" : [1, 2],\n \"_rev\":\"2-def\" }", json.getString());
+		assertEquals("doc1", json.getTopLevelStringProperty("_id"));
+	}
+
+	@Test
+	public void fallsBackToGsonForLenientInput() {
+		JsonString json = new JsonString("{_id:'doc1', a:1}");
+		assertEquals("doc1", json.getTopLevelStringProperty("_id"));
+		assertNull(json.getTopLevelStringProperty("_rev"));
+		json.setTopLevelStringProperty("_rev", "1-abc");
+
+		// the document is written as strict JSON after the fallback
+		JsonObject result = new Gson().fromJson(json.getString(), JsonObject.class);
+		assertEquals("doc1", result.get("_id").getAsString());
+		assertEquals("1-abc", result.get("_rev").getAsString());
+		assertEquals(1, result.get("a").getAsInt());
+		assertEquals("1-abc", JsonScanner.getTopLevelString(json.getString(), "_rev"));
+	}
+
+	@Test
+	public void usesParsedObjectAfterConversion() {
+		JsonString json = new JsonString("{\"_id\":\"doc1\"}");
+		json.getJsonObject().addProperty("b", "x");
+		json.setTopLevelStringProperty("_id", "doc2");
+		JsonObject result = new Gson().fromJson(json.getString(), JsonObject.class);
+		assertEquals("doc2", result.get("_id").getAsString());
+		assertEquals("x", result.get("b").getAsString());
+	}
+
+	@Test
+	public void startsWithEmptyObject() {
+		JsonString json = new JsonString();
+		json.setTopLevelStringProperty("_id", "doc1");
+		assertEquals("doc1", new Gson().fromJson(json.getString(), JsonObject.class).get("_id").getAsString());
+	}
+
+}
@@ -0,0 +1,74 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+	@Test
+	public void allowsBurstOfOneHundredMilliseconds() {
+		RateLimiter limiter = new RateLimiter(100);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 10; i++) {
+			assertEquals(0, limiter.reserve(1, now));
+		}
+		// the bucket is empty, the next token is added after 10 ms
+		assertEquals(10, limiter.reserve(1, now));
+	}
+
+	@Test
+	public void refillsOverTime() {
+		RateLimiter limiter = new RateLimiter(100);
+		long now = System.currentTimeMillis();
+		assertEquals(0, limiter.reserve(10, now));
+		assertEquals(0, limiter.reserve(5, now + 50));
+		assertEquals(10, limiter.reserve(1, now + 50));
+	}
+
+	@Test
+	public void neverHoldsMoreThanCapacity() {
+		RateLimiter limiter = new RateLimiter(100);
+		long now = System.currentTimeMillis();
+		assertEquals(0, limiter.reserve(10, now + 10000));
+		assertEquals(10, limiter.reserve(1, now + 10000));
+	}
+
+	@Test
+	public void bulkRequestsGoIntoDebt() {
+		RateLimiter limiter = new RateLimiter(10);
+		long now = System.currentTimeMillis();
+		// the capacity is 1 token, 4 tokens are missing
+		assertEquals(400, limiter.reserve(5, now));
+		// later callers wait until the debt is paid back
+		assertEquals(500, limiter.reserve(1, now));
+		assertEquals(100, limiter.reserve(1, now + 500));
+	}
+
+	@Test
+	public void holdsAtLeastOneToken() {
+		RateLimiter limiter = new RateLimiter(0.5);
+		long now = System.currentTimeMillis();
+		assertEquals(0, limiter.reserve(1, now));
+		assertEquals(2000, limiter.reserve(1, now));
+	}
+
+	@Test
+	public void acquireWaits() throws InterruptedException {
+		RateLimiter limiter = new RateLimiter(20);
+		limiter.acquire(1);
+		long start = System.currentTimeMillis();
+		limiter.acquire(2);
+		// the capacity is 2 tokens, 1 is missing
+		assertTrue(System.currentTimeMillis() - start >= 30);
+	}
+
+}
@@ -0,0 +1,143 @@
+//
+// ****************************************************************************
+// * Copyright (C) 2017, International Business Machines Corporation          *
+// * All rights reserved.                                                     *
+// ****************************************************************************
+//
+
+package com.ibm.streamsx.cloudant.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class InFlightWindowTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	private final List<Integer> results = Collections.synchronizedList(new ArrayList<Integer>());
+
+	@After
+	public void stopExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void handlesResultsInSubmissionOrder() throws Exception {
+		InFlightWindow<Integer, String> window = new InFlightWindow<Integer, String>(executor, 4, (result, context) -> results.add(result));
+		for (int i = 0; i < 8; i++) {
+			// later requests complete first
+			final int value = i;
+			window.submit(() -> {
+				Thread.sleep(40 - 5 * value);
+				return value;
+			}, null);
+		}
+		window.drain();
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), results);
+	}
+
+	@Test
+	public void handlesResultsInCompletionOrder() throws Exception {
+		final CountDownLatch first = new CountDownLatch(1);
+		InFlightWindow<Integer, String> window = new InFlightWindow<Integer, String>(executor, 4, (result, context) -> results.add(result), false);
+		window.submit(() -> {
+			first.await();
+			return 0;
+		}, null);
+		window.submit(() -> 1, null);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (results.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		first.countDown();
+		window.drain();
+		assertEquals(Arrays.asList(1, 0), results);
+	}
+
+	@Test
+	public void passesContext() throws Exception {
+		final List<String> contexts = new ArrayList<String>();
+		InFlightWindow<Integer, String> window = new InFlightWindow<Integer, String>(executor, 2, (result, context) -> contexts.add(context + result));
+		window.submit(() -> 1, "a");
+		window.submit(() -> 2, "b");
+		window.drain();
+		assertEquals(Arrays.asList("a1", "b2"), contexts);
+	}
+
+	@Test
+	public void limitsRequestsInFlight() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		InFlightWindow<Integer, String> window = new InFlightWindow<Integer, String>(executor, 2, (result, context) -> results.add(result));
+		for (int i = 0; i < 10; i++) {
+			final int value = i;
+			window.submit(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Thread.sleep(10);
+				running.decrementAndGet();
+				return value;
+			}, null);
+			assertTrue(window.size() <= 2);
+		}
+		window.drain();
+		assertEquals(10, results.size());
+		assertTrue(maxRunning.get() <= 2);
+	}
+
+	@Test
+	public void rethrowsRequestError() throws Exception {
+		InFlightWindow<Integer, String> window = new InFlightWindow<Integer, String>(executor, 2, (result, context) -> results.add(result));
+		try {
+			window.submit(() -> {
+				throw new IllegalStateException("request failed");
+			}, null);
+			window.drain();
+			fail("error not thrown");
+		} catch (IllegalStateException e) {
+			assertEquals("request failed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void rethrowsHandlerError() throws Exception {
+		InFlightWindow<Integer, String> window = new InFlightWindow<Integer, String>(executor, 2, (result, context) -> {
+			throw new IllegalStateException("handler failed");
+		});
+		// the error is thrown by the next call, depending on the thread that handled the result
+		try {
+			window.submit(() -> 1, null);
+			window.drain();
+			fail("error not thrown");
+		} catch (IllegalStateException e) {
+			assertEquals("handler failed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void shutdownDrainsAndStopsExecutor() throws Exception {
+		ExecutorService own = Executors.newSingleThreadExecutor();
+		InFlightWindow<Integer, String> window = new InFlightWindow<Integer, String>(own, 2, (result, context) -> results.add(result));
+		window.submit(() -> {
+			Thread.sleep(20);
+			return 1;
+		}, null);
+		window.shutdown();
+		assertEquals(Arrays.asList(1), results);
+		assertTrue(own.awaitTermination(1, TimeUnit.SECONDS));
+	}
+
+}